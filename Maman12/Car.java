@@ -161,6 +161,7 @@ public class Car {
 
     /**
      * Checks if this car is the same as another car.
+     * The brand may be null, a car with no brand is the same only as another car with no brand.
      *
      * @param other The car to compare to.
      * @return True if the cars are the same, false otherwise.
@@ -169,7 +170,8 @@ public class Car {
         if (other == null) {
             return false;
         }
-        return this._type == other.getType() && this._brand.equals(other.getBrand()) && this._isManual == other.isManual();
+        boolean sameBrand = this._brand == null ? other.getBrand() == null : this._brand.equals(other.getBrand());
+        return this._type == other.getType() && sameBrand && this._isManual == other.isManual();
     }
 
     /**
@@ -1,16 +1,19 @@
 package Maman12;
 
+import java.io.IOException;
+
 /**
  * This class represents a Date with day, month, and year.
  * The date must be valid according to the Gregorian calendar rules.
  * The class provides methods for date manipulation, comparison, and calculation.
  * The valid year range is from 1000 to 9999.
  * If an invalid date is provided, it defaults to 01/01/2000.
+ * The date also keeps its epoch day (days since 01/01/1970), so comparisons and differences are a single integer operation.
  *
  * @author Osher Akshikar
  * @version 2023a
  */
-public class Date {
+public class Date implements Comparable<Date> {
 
     /**
      * Day of the month
@@ -24,6 +27,10 @@ public class Date {
      * Year (4 digits)
      */
     private int _year;
+    /**
+     * Number of days since 1/1/1970, kept in sync with day, month and year
+     */
+    private int _epochDay;
 
     /**
      * Constants representing months
@@ -35,6 +42,11 @@ public class Date {
      */
     private static final int MAX_YEAR = 9999, MIN_YEAR = 1000, MAX_DAY = 31, MIN_DAY = 1, NUM_29 = 29, NUM_30 = 30;
 
+    /**
+     * Day count of 1/1/1970, the origin of epoch days
+     */
+    private static final int EPOCH = calculateDate(1, JAN, 1970);
+
     /**
      * Calculates the number of days from 1/1/0001 to the given date.
      * Uses the Gregorian calendar algorithm.
@@ -44,7 +56,7 @@ public class Date {
      * @param year  the year (4 digits)
      * @return number of days since 1/1/0001
      */
-    private int calculateDate(int day, int month, int year) {
+    private static int calculateDate(int day, int month, int year) {
         if (month < 3) {
             year--;
             month = month + 12;
@@ -98,6 +110,7 @@ public class Date {
             this._month = JAN;
             this._year = 2000;
         }
+        this._epochDay = calculateDate(this._day, this._month, this._year) - EPOCH;
     }
 
     /**
@@ -110,9 +123,33 @@ public class Date {
             this._day = other.getDay();
             this._month = other.getMonth();
             this._year = other.getYear();
+            this._epochDay = other._epochDay;
+        } else {
+            this._epochDay = calculateDate(0, 0, 0) - EPOCH;
         }
     }
 
+    /**
+     * Creates the date that is the given number of days after 1/1/1970.
+     * If the result is not a valid date (outside the years 1000-9999), it is set to 1/1/2000.
+     *
+     * @param epochDay the number of days since 1/1/1970
+     * @return a new Date object for that day
+     */
+    public static Date ofEpochDay(int epochDay) {
+        // civil-from-days conversion over 400 year eras that start on March 1st
+        int z = epochDay + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= FEB ? 1 : 0);
+        return new Date(day, month, year);
+    }
+
     /**
      * Gets the day
      *
@@ -140,13 +177,25 @@ public class Date {
         return this._year;
     }
 
+    /**
+     * Gets the number of days since 1/1/1970
+     *
+     * @return the epoch day of this date
+     */
+    public int toEpochDay() {
+        return this._epochDay;
+    }
+
     /**
      * Sets the day. The change will only be applied if the resulting date is valid.
      *
      * @param dayToSet the day value to be set (1-31)
      */
     public void setDay(int dayToSet) {
-        if (dateCheck(dayToSet, this._month, this._year)) this._day = dayToSet;
+        if (dateCheck(dayToSet, this._month, this._year)) {
+            this._day = dayToSet;
+            this._epochDay = calculateDate(this._day, this._month, this._year) - EPOCH;
+        }
     }
 
     /**
@@ -155,7 +204,10 @@ public class Date {
      * @param monthToSet the month value to be set (1-12)
      */
     public void setMonth(int monthToSet) {
-        if (dateCheck(this._day, monthToSet, this._year)) this._month = monthToSet;
+        if (dateCheck(this._day, monthToSet, this._year)) {
+            this._month = monthToSet;
+            this._epochDay = calculateDate(this._day, this._month, this._year) - EPOCH;
+        }
     }
 
     /**
@@ -164,7 +216,10 @@ public class Date {
      * @param yearToSet the year value to be set (1000-9999)
      */
     public void setYear(int yearToSet) {
-        if (dateCheck(this._day, this._month, yearToSet)) this._year = yearToSet;
+        if (dateCheck(this._day, this._month, yearToSet)) {
+            this._year = yearToSet;
+            this._epochDay = calculateDate(this._day, this._month, this._year) - EPOCH;
+        }
     }
 
     /**
@@ -187,9 +242,7 @@ public class Date {
      * @return true if this date is before other date, false otherwise
      */
     public boolean before(Date other) {
-        int firstDate = calculateDate(this._day, this._month, this._year);
-        int secondDate = calculateDate(other.getDay(), other.getMonth(), other.getYear());
-        return firstDate < secondDate;
+        return this._epochDay < other._epochDay;
     }
 
     /**
@@ -199,7 +252,7 @@ public class Date {
      * @return true if this date is after other date, false otherwise
      */
     public boolean after(Date other) {
-        return other.before(this);
+        return this._epochDay > other._epochDay;
     }
 
     /**
@@ -209,9 +262,17 @@ public class Date {
      * @return the absolute number of days between the dates
      */
     public int difference(Date other) {
-        int firstDate = calculateDate(this._day, this._month, this._year);
-        int secondDate = calculateDate(other.getDay(), other.getMonth(), other.getYear());
-        return Math.abs(firstDate - secondDate);
+        return Math.abs(this._epochDay - other._epochDay);
+    }
+
+    /**
+     * Compares this date with another date in chronological order
+     *
+     * @param other the date to compare this date to
+     * @return a negative number if this date is before other, zero if they are the same day, a positive number if it is after
+     */
+    public int compareTo(Date other) {
+        return Integer.compare(this._epochDay, other._epochDay);
     }
 
     /**
@@ -220,7 +281,31 @@ public class Date {
      * @return the date formatted as "dd/MM/yyyy" (e.g., 01/01/2000)
      */
     public String toString() {
-        return String.format("%02d/%02d/%04d", _day, _month, _year);
+        char[] text = new char[10];
+        text[0] = (char) ('0' + _day / 10 % 10);
+        text[1] = (char) ('0' + _day % 10);
+        text[2] = '/';
+        text[3] = (char) ('0' + _month / 10 % 10);
+        text[4] = (char) ('0' + _month % 10);
+        text[5] = '/';
+        text[6] = (char) ('0' + _year / 1000 % 10);
+        text[7] = (char) ('0' + _year / 100 % 10);
+        text[8] = (char) ('0' + _year / 10 % 10);
+        text[9] = (char) ('0' + _year % 10);
+        return new String(text);
+    }
+
+    /**
+     * Writes this date to the given output in the format of toString, without creating a String.
+     *
+     * @param out the output to write to
+     * @throws IOException if the output cannot be written
+     */
+    public void appendTo(Appendable out) throws IOException {
+        out.append((char) ('0' + _day / 10 % 10)).append((char) ('0' + _day % 10)).append('/')
+                .append((char) ('0' + _month / 10 % 10)).append((char) ('0' + _month % 10)).append('/')
+                .append((char) ('0' + _year / 1000 % 10)).append((char) ('0' + _year / 100 % 10))
+                .append((char) ('0' + _year / 10 % 10)).append((char) ('0' + _year % 10));
     }
 
     /**
@@ -0,0 +1,103 @@
+package Maman12;
+
+/**
+ * A precomputed table of the prices of a tariff card for every car type and every rent length up to a limit.
+ * Prices inside the table are one array lookup, longer rents (and unknown types) are passed to the card itself,
+ * so a table always gives exactly the card's prices.
+ *
+ * @author Osher Akshikar
+ * @version 2023a
+ */
+public class PriceTable {
+    /**
+     * Rent lengths the default table holds, ten years
+     */
+    public static final int DEFAULT_MAX_DAYS = 3660;
+
+    /**
+     * The table of the standard tariff, the prices of Rent.getPrice
+     */
+    public static final PriceTable STANDARD = new PriceTable(Tariff.STANDARD, DEFAULT_MAX_DAYS);
+
+    private final Tariff _tariff;
+    private final int _maxDays;
+    private final int[] _prices; // price of type 'A' + t and d days at t * (maxDays + 1) + d
+
+    /**
+     * Creates the table of the given tariff card.
+     * <p>
+     * Time complexity: O(maxDays) calls to the card
+     *
+     * @param tariff  the tariff card
+     * @param maxDays the longest rent, in days, that is kept in the table
+     */
+    public PriceTable(Tariff tariff, int maxDays) {
+        _tariff = tariff;
+        _maxDays = Math.max(maxDays, 0);
+        _prices = new int[4 * (_maxDays + 1)];
+        for (int t = 0; t < 4; t++) {
+            for (int d = 0; d <= _maxDays; d++)
+                _prices[t * (_maxDays + 1) + d] = tariff.price((char) ('A' + t), d);
+        }
+    }
+
+    /**
+     * Returns the tariff card of this table
+     *
+     * @return the tariff card
+     */
+    public Tariff getTariff() {
+        return _tariff;
+    }
+
+    /**
+     * Returns the price of a rent with the given car type and number of days.
+     *
+     * @param type the car type ('A', 'B', 'C' or 'D')
+     * @param days the number of rental days
+     * @return the price of the tariff card for such a rent
+     */
+    public int price(char type, int days) {
+        int t = type - 'A';
+        if (t < 0 || t > 3 || days < 0 || days > _maxDays)
+            return _tariff.price(type, days);
+        return _prices[t * (_maxDays + 1) + days];
+    }
+
+    /**
+     * Prices many rents at once: out[i] gets the price of a rent with car type types[i] and days[i] days.
+     * The loop only reads the arrays and the table, so it is one tight pass over the input.
+     *
+     * @param types the car types of the rents
+     * @param days  the number of days of the rents
+     * @param out   the array the prices are written to, at least as long as the input
+     * @return the sum of the prices
+     */
+    public long priceAll(char[] types, int[] days, int[] out) {
+        return priceAll(types, days, out, Math.min(types.length, days.length));
+    }
+
+    /**
+     * Prices the first n rents of the arrays, like priceAll(char[], int[], int[]).
+     *
+     * @param types the car types of the rents
+     * @param days  the number of days of the rents
+     * @param out   the array the prices are written to
+     * @param n     the number of rents to price
+     * @return the sum of the prices
+     */
+    public long priceAll(char[] types, int[] days, int[] out, int n) {
+        int[] prices = _prices;
+        int stride = _maxDays + 1;
+        long sum = 0;
+        for (int i = 0; i < n; i++) {
+            int t = types[i] - 'A';
+            int d = days[i];
+            // (t | d) >= 0 checks both for negatives at once, a rent outside the table goes to the card
+            int price = (t | d) >= 0 && t < 4 && d < stride ? prices[t * stride + d] : _tariff.price(types[i], d);
+            out[i] = price;
+            sum += price;
+        }
+        return sum;
+    }
+}
@@ -1,5 +1,7 @@
 package Maman12;
 
+import java.io.IOException;
+
 /**
  * Represents a car rental record containing customer information, car details, and rental period.
  * This class manages rental transactions including pricing calculations, car upgrades, and overlap detection.
@@ -31,32 +33,32 @@ public class Rent {
     /**
      * Daily rental price for car type A
      */
-    private final int PRICE_A = 100;
+    private static final int PRICE_A = 100;
 
     /**
      * Daily rental price for car type B
      */
-    private final int PRICE_B = 150;
+    private static final int PRICE_B = 150;
 
     /**
      * Daily rental price for car type C
      */
-    private final int PRICE_C = 180;
+    private static final int PRICE_C = 180;
 
     /**
      * Daily rental price for car type D
      */
-    private final int PRICE_D = 240;
+    private static final int PRICE_D = 240;
 
     /**
      * Discount factor applied to weekly rentals (10% discount)
      */
-    private final double DISCOUNT = 0.9;
+    private static final double DISCOUNT = 0.9;
 
     /**
      * Number of days in a week for pricing calculations
      */
-    private final int WEEK_LENGTH = 7;
+    private static final int WEEK_LENGTH = 7;
 
     /**
      * Constructs a new Rent object with the specified parameters.
@@ -101,6 +103,42 @@ public class Rent {
         return new Car(_car);
     }
 
+    /**
+     * Returns the id of the car being rented, without copying the car.
+     *
+     * @return The id of the rented car
+     */
+    public int getCarId() {
+        return _car.getId();
+    }
+
+    /**
+     * Returns the type of the car being rented, without copying the car.
+     *
+     * @return The type of the rented car
+     */
+    public char getCarType() {
+        return _car.getType();
+    }
+
+    /**
+     * Returns the brand of the car being rented, without copying the car.
+     *
+     * @return The brand of the rented car
+     */
+    public String getCarBrand() {
+        return _car.getBrand();
+    }
+
+    /**
+     * Returns whether the car being rented has a manual gear, without copying the car.
+     *
+     * @return true if the rented car is manual, false if it is automatic
+     */
+    public boolean isCarManual() {
+        return _car.isManual();
+    }
+
     /**
      * Returns the customer's name.
      *
@@ -119,6 +157,15 @@ public class Rent {
         return new Date(_pickDate);
     }
 
+    /**
+     * Returns the pickup date as an epoch day (see Date.toEpochDay), without copying the date.
+     *
+     * @return The pickup date as an epoch day
+     */
+    public int getPickDay() {
+        return _pickDate.toEpochDay();
+    }
+
     /**
      * Returns a copy of the return date.
      *
@@ -175,7 +222,33 @@ public class Rent {
      */
     public boolean equals(Rent other) {
         if (other == null) return false;
-        return other.getCar().equals(_car) && other.getName().equals(_name) && other.getPickDate().equals(_pickDate) && getReturnDate().equals(_returnDate);
+        return other._car.equals(_car) && other._name.equals(_name) && other._pickDate.equals(_pickDate) && other._returnDate.equals(_returnDate);
+    }
+
+    /**
+     * Checks if this rental is equal to another object, with the same rules as equals(Rent).
+     *
+     * @param other The object to compare with
+     * @return true if other is a Rent equal to this one, false otherwise
+     */
+    public boolean equals(Object other) {
+        return other instanceof Rent && equals((Rent) other);
+    }
+
+    /**
+     * Returns a hash code built from the same details equals compares: the customer name,
+     * the car's type, brand and gear, and both dates. Equal rentals always have the same hash code.
+     *
+     * @return the hash code of this rental
+     */
+    public int hashCode() {
+        int hash = _name == null ? 0 : _name.hashCode();
+        hash = 31 * hash + _car.getType();
+        hash = 31 * hash + (_car.getBrand() == null ? 0 : _car.getBrand().hashCode());
+        hash = 31 * hash + (_car.isManual() ? 1 : 0);
+        hash = 31 * hash + _pickDate.toEpochDay();
+        hash = 31 * hash + _returnDate.toEpochDay();
+        return hash;
     }
 
     /**
@@ -195,11 +268,22 @@ public class Rent {
      * @return The total price for the rent
      */
     public int getPrice() {
-        int weeks = howManyDays() / 7;
-        int regularDays = howManyDays() % 7;
+        return getPrice(_car.getType(), howManyDays());
+    }
+
+    /**
+     * Calculates the price of a rent of the given car type and length, using the same rules as getPrice().
+     *
+     * @param type the car type ('A', 'B', 'C' or 'D')
+     * @param days the number of rental days
+     * @return The total price for such a rent
+     */
+    public static int getPrice(char type, int days) {
+        int weeks = days / 7;
+        int regularDays = days % 7;
         double totalDays = (DISCOUNT * weeks * WEEK_LENGTH + regularDays);
 
-        switch (_car.getType()) {
+        switch (type) {
             case 'A':
                 return (int) (PRICE_A * totalDays);
             case 'B':
@@ -237,12 +321,12 @@ public class Rent {
      */
     public Rent overlap(Rent other) {
         // if name or car are different, return null
-        if (!other.getName().equals(this._name) || !other.getCar().equals(this.getCar())) return null;
+        if (!other._name.equals(this._name) || !other._car.equals(this._car)) return null;
 
-        Date thisPick = this.getPickDate();
-        Date thisReturn = this.getReturnDate();
-        Date otherPick = other.getPickDate();
-        Date otherReturn = other.getReturnDate();
+        Date thisPick = this._pickDate;
+        Date thisReturn = this._returnDate;
+        Date otherPick = other._pickDate;
+        Date otherReturn = other._returnDate;
 
         // No overlap if one ends before the other begins
         // Note: if one ends on the same day the other begins, it is considered an overlap
@@ -266,4 +350,44 @@ public class Rent {
         return "Name:" + _name + " From:" + _pickDate + " To:" + _returnDate + " Type:" + _car.getType() + " Days:" + howManyDays() + " Price:" + getPrice();
     }
 
+    /**
+     * Writes this rental to the given output in the format of toString, without creating intermediate Strings.
+     *
+     * @param out the output to write to
+     * @throws IOException if the output cannot be written
+     */
+    public void appendTo(Appendable out) throws IOException {
+        out.append("Name:").append(_name).append(" From:");
+        _pickDate.appendTo(out);
+        out.append(" To:");
+        _returnDate.appendTo(out);
+        out.append(" Type:").append(_car.getType()).append(" Days:");
+        appendNumber(out, howManyDays());
+        out.append(" Price:");
+        appendNumber(out, getPrice());
+    }
+
+    /**
+     * Writes the decimal digits of a number to the output.
+     *
+     * @param out    the output to write to
+     * @param number the number to write
+     * @throws IOException if the output cannot be written
+     */
+    private static void appendNumber(Appendable out, int number) throws IOException {
+        if (number < 0) {
+            out.append('-');
+            if (number == Integer.MIN_VALUE) { // has no positive counterpart
+                out.append("2147483648");
+                return;
+            }
+            number = -number;
+        }
+        int scale = 1;
+        while (number / scale >= 10)
+            scale *= 10;
+        for (; scale > 0; scale /= 10)
+            out.append((char) ('0' + number / scale % 10));
+    }
+
 }
@@ -0,0 +1,28 @@
+package Maman12;
+
+/**
+ * A tariff card: the rule that gives the price of a rent from its car type and its number of days.
+ * The standard card is the one Rent.getPrice uses; other cards can be plugged into a PriceTable.
+ *
+ * @author Osher Akshikar
+ * @version 2023a
+ */
+public interface Tariff {
+    /**
+     * The tariff of Rent.getPrice: a daily price by car type, with a 10% discount on every full week
+     */
+    Tariff STANDARD = new Tariff() {
+        public int price(char type, int days) {
+            return Rent.getPrice(type, days);
+        }
+    };
+
+    /**
+     * Returns the price of a rent.
+     *
+     * @param type the car type ('A', 'B', 'C' or 'D')
+     * @param days the number of rental days
+     * @return the total price of such a rent
+     */
+    int price(char type, int days);
+}
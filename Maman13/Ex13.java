@@ -1,22 +1,32 @@
 package Maman13;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 /**
  * This class provides solutions to various algorithmic problems involving arrays and sequences.
  * <p>
  * The class includes four main algorithms:
  * 1. Alternating sequence optimization - finds minimum swaps to create alternating bit pattern
  * 2. Even-sum subarray analysis - finds the longest contiguous subarray with even sum
- * 3. Path validation - checks if a valid route exists in an array using jump mechanics
+ * 3. Path validation - checks if a valid route exists in an array using jump mechanics (with the route itself)
  * 4. Shortest path finding - finds optimal route for a prince in a dungeon maze
  * <p>
  * All methods are designed with efficiency in mind, utilizing optimal time and space complexity
  * where possible. The solutions employ various algorithmic techniques, including greedy algorithms,
- * dynamic programming concepts, and recursive backtracking.
+ * dynamic programming concepts and breadth-first search.
  *
  * @author Osher Akshikar
  * @version 2023a
  */
 public class Ex13 {
+    /**
+     * Inputs shorter than this are handled sequentially by the parallel versions,
+     * and parallel tasks stop splitting below this size.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
     /**
      * Calculates the minimum number of swaps needed to create an alternating binary sequence.
      * <p>
@@ -47,6 +57,140 @@ public class Ex13 {
         return Math.min(counter10, counter01); //return the numbers of swaps
     }
 
+    /**
+     * Bit-packed version of alternating for large inputs.
+     * <p>
+     * Bit i of the sequence is bit (i % 64) of bits[i / 64]. The ones at even positions are counted 64 positions
+     * at a time with a mask of the even bits and a population count, instead of one character at a time.
+     *
+     * @param bits   the packed binary sequence (see packBinary)
+     * @param length the number of bits in the sequence
+     * @return the minimum number of swaps needed to create an alternating sequence, the same as alternating(String)
+     * <p>
+     * Time complexity: O(n/64)
+     * Space complexity: O(1)
+     */
+    public static int alternating(long[] bits, int length) {
+        final long evenBits = 0x5555555555555555L;
+        int fullWords = length >>> 6;
+        int ones = 0; // ones at even positions
+        for (int w = 0; w < fullWords; w++) {
+            ones += Long.bitCount(bits[w] & evenBits);
+        }
+        int rest = length & 63;
+        if (rest != 0) {
+            ones += Long.bitCount(bits[fullWords] & evenBits & ((1L << rest) - 1));
+        }
+        int evenPositions = (length + 1) / 2;
+        return Math.min(evenPositions - ones, ones);
+    }
+
+    /**
+     * Version of alternating for a binary string held as ASCII bytes ('0' and '1'), for example as read from a file.
+     * <p>
+     * '0' is 48 and '1' is 49, so the lowest bit of every byte is its digit. The even positions are summed
+     * four at a time without branches.
+     *
+     * @param s the binary sequence as ASCII bytes
+     * @return the minimum number of swaps needed to create an alternating sequence, the same as alternating(String)
+     * <p>
+     * Time complexity: O(n)
+     * Space complexity: O(1)
+     */
+    public static int alternating(byte[] s) {
+        int ones0 = 0, ones1 = 0, ones2 = 0, ones3 = 0; // independent counters, so the additions can overlap
+        int i = 0;
+        for (; i + 6 < s.length; i += 8) {
+            ones0 += s[i] & 1;
+            ones1 += s[i + 2] & 1;
+            ones2 += s[i + 4] & 1;
+            ones3 += s[i + 6] & 1;
+        }
+        for (; i < s.length; i += 2) {
+            ones0 += s[i] & 1;
+        }
+        int ones = ones0 + ones1 + ones2 + ones3;
+        int evenPositions = (s.length + 1) / 2;
+        return Math.min(evenPositions - ones, ones);
+    }
+
+    /**
+     * Packs a binary string into the bit layout used by alternating(long[], int).
+     *
+     * @param s the binary string containing only '0' and '1' characters
+     * @return the packed bits, bit i is set if character i is '1'
+     */
+    public static long[] packBinary(CharSequence s) {
+        long[] bits = new long[(s.length() + 63) >>> 6];
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '1') {
+                bits[i >>> 6] |= 1L << (i & 63);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Parallel version of alternating(String), using the common fork-join pool.
+     *
+     * @param s the binary string containing only '0' and '1' characters
+     * @return the minimum number of swaps needed to create an alternating sequence, the same as alternating(s)
+     */
+    public static int alternatingParallel(String s) {
+        return alternatingParallel(s, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parallel version of alternating(String).
+     * <p>
+     * The string is split into chunks that start at even positions, the zeros at even positions of every chunk
+     * are counted in parallel and the counts are added. Short strings are handled sequentially.
+     *
+     * @param s    the binary string containing only '0' and '1' characters
+     * @param pool the fork-join pool to run on
+     * @return the minimum number of swaps needed to create an alternating sequence, the same as alternating(s)
+     * <p>
+     * Time complexity: O(n/p + log n) on p cores
+     */
+    public static int alternatingParallel(String s, ForkJoinPool pool) {
+        if (s.length() < PARALLEL_THRESHOLD) return alternating(s);
+        int zeros = pool.invoke(new EvenZerosTask(s, 0, s.length()));
+        int evenPositions = (s.length() + 1) / 2;
+        return Math.min(zeros, evenPositions - zeros);
+    }
+
+    /**
+     * Counts the '0' characters at even positions of s between from (inclusive, even) and to (exclusive).
+     */
+    private static final class EvenZerosTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final String _s;
+        private final int _from;
+        private final int _to;
+
+        EvenZerosTask(String s, int from, int to) {
+            _s = s;
+            _from = from;
+            _to = to;
+        }
+
+        protected Integer compute() {
+            if (_to - _from <= PARALLEL_THRESHOLD) {
+                int zeros = 0;
+                for (int i = _from; i < _to; i += 2) {
+                    if (_s.charAt(i) == '0') zeros++;
+                }
+                return zeros;
+            }
+            int mid = (_from + (_to - _from) / 2) & ~1; // keep chunks starting at even positions
+            EvenZerosTask left = new EvenZerosTask(_s, _from, mid);
+            left.fork();
+            int right = new EvenZerosTask(_s, mid, _to).compute();
+            return left.join() + right;
+        }
+    }
+
     /**
      * Finds the length of the longest contiguous subarray with an even sum.
      * <p>
@@ -88,53 +232,219 @@ public class Ex13 {
         return Math.max(opt0, opt1);
     }
 
+    /**
+     * Loop-unrolled version of what for large arrays, returns the same result.
+     * <p>
+     * The parity of the sum is the parity of the xor of all the elements, which is accumulated four elements
+     * at a time in independent variables without any branch. The first and last odd elements are then found by
+     * scanning four elements at a time from each end, which stops as soon as one is found.
+     *
+     * @param a the integer array to analyze (must not be null)
+     * @return the length of the longest contiguous subarray with even sum
+     * <p>
+     * Time complexity: O(n)
+     * Space complexity: O(1)
+     */
+    public static int whatUnrolled(int[] a) {
+        int x0 = 0, x1 = 0, x2 = 0, x3 = 0;
+        int i = 0;
+        for (; i + 3 < a.length; i += 4) {
+            x0 ^= a[i];
+            x1 ^= a[i + 1];
+            x2 ^= a[i + 2];
+            x3 ^= a[i + 3];
+        }
+        for (; i < a.length; i++) {
+            x0 ^= a[i];
+        }
+        if (((x0 ^ x1 ^ x2 ^ x3) & 1) == 0) {
+            return a.length; // the sum is even
+        }
+        // an odd element exists, since the sum is odd. Blocks of four are skipped while none of them is odd
+        int firstOddIndex = 0;
+        while (firstOddIndex + 3 < a.length && ((a[firstOddIndex] | a[firstOddIndex + 1] | a[firstOddIndex + 2] | a[firstOddIndex + 3]) & 1) == 0) {
+            firstOddIndex += 4;
+        }
+        while ((a[firstOddIndex] & 1) == 0) {
+            firstOddIndex++;
+        }
+        int lastOddIndex = a.length - 1;
+        while (lastOddIndex >= 3 && ((a[lastOddIndex] | a[lastOddIndex - 1] | a[lastOddIndex - 2] | a[lastOddIndex - 3]) & 1) == 0) {
+            lastOddIndex -= 4;
+        }
+        while ((a[lastOddIndex] & 1) == 0) {
+            lastOddIndex--;
+        }
+        return Math.max(a.length - (firstOddIndex + 1), lastOddIndex);
+    }
+
+    /**
+     * Parallel version of what, using the common fork-join pool.
+     *
+     * @param a the integer array to analyze (must not be null)
+     * @return the length of the longest contiguous subarray with even sum, the same as what(a)
+     */
+    public static int whatParallel(int[] a) {
+        return whatParallel(a, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parallel version of what.
+     * <p>
+     * Every chunk of the array is reduced in parallel to (sum parity, first odd index, last odd index), and two
+     * neighbouring chunks combine by xor-ing the parities, taking the left chunk's first odd index when it has one
+     * and the right chunk's last odd index when it has one. Short arrays are handled sequentially.
+     *
+     * @param a    the integer array to analyze (must not be null)
+     * @param pool the fork-join pool to run on
+     * @return the length of the longest contiguous subarray with even sum, the same as what(a)
+     * <p>
+     * Time complexity: O(n/p + log n) on p cores
+     */
+    public static int whatParallel(int[] a, ForkJoinPool pool) {
+        if (a.length < PARALLEL_THRESHOLD) return whatUnrolled(a);
+        int[] summary = pool.invoke(new OddSummaryTask(a, 0, a.length));
+        if (summary[0] == 0) return a.length;
+        return Math.max(a.length - (summary[1] + 1), summary[2]);
+    }
+
+    /**
+     * Reduces a[from..to) to {sum parity, first odd index, last odd index}, with -1 for a missing odd index.
+     */
+    private static final class OddSummaryTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] _a;
+        private final int _from;
+        private final int _to;
+
+        OddSummaryTask(int[] a, int from, int to) {
+            _a = a;
+            _from = from;
+            _to = to;
+        }
+
+        protected int[] compute() {
+            if (_to - _from <= PARALLEL_THRESHOLD) {
+                int parity = 0;
+                int first = -1;
+                int last = -1;
+                for (int i = _from; i < _to; i++) {
+                    if ((_a[i] & 1) != 0) {
+                        if (first == -1) first = i;
+                        last = i;
+                        parity ^= 1;
+                    }
+                }
+                return new int[]{parity, first, last};
+            }
+            int mid = _from + (_to - _from) / 2;
+            OddSummaryTask leftTask = new OddSummaryTask(_a, _from, mid);
+            leftTask.fork();
+            int[] right = new OddSummaryTask(_a, mid, _to).compute();
+            int[] left = leftTask.join();
+            return new int[]{left[0] ^ right[0], left[1] != -1 ? left[1] : right[1], right[2] != -1 ? right[2] : left[2]};
+        }
+    }
+
     /**
      * Determines if there exists a valid path from the first element to the last element of an array.
      * <p>
      * This method checks if it's possible to reach the last index of an array starting from index 0,
      * where each array element represents the number of steps you can move forward or backward.
-     * The algorithm uses recursive backtracking with temporary marking to avoid infinite loops.
      * <p>
      * Path Rules:
      * - Start at index 0
      * - From any position i, you can move to position (i + a[i]) or (i - a[i])
-     * - Cannot revisit positions (marked with 0 during traversal)
+     * - Positions holding 0 can never be stood on
      * - Goal is to reach the last index (a.length - 1)
+     * <p>
+     * Algorithm: iterative breadth-first search over the positions (see reachable), so the array is not modified
+     * and deep inputs cannot overflow the call stack.
      *
      * @param a the array of positive integers representing step sizes (must not be null or empty)
      * @return true if a valid path exists from first to last element, false otherwise
      * <p>
-     * Time complexity: O(2^n) in worst case due to recursive exploration
-     * Space complexity: O(n) for recursion stack depth
+     * Time complexity: O(n) - every position is visited at most once
+     * Space complexity: O(n) for the search queue
      */
     public static boolean isWay(int[] a) {
         if (a.length == 1) return true;
-        return isWay(a, 0);
+        return jumpParents(a)[a.length - 1] != -1;
     }
 
     /**
-     * Helper method for isWay that performs the actual recursive path-finding logic.
-     * <p>
-     * This private method implements the core recursive algorithm for finding a valid path.
-     * It uses backtracking by temporarily marking visited positions with 0 to prevent
-     * infinite loops, then restoring the original value after exploring both directions.
+     * Finds which positions of the array can be reached from index 0 with the jump rules of isWay.
+     * The result answers reachability for any number of target positions of the same array in O(1) each.
      *
-     * @param a the array being traversed (modified temporarily during recursion)
-     * @param i the current index position in the array
-     * @return true if a path exists from current position to the last index, false otherwise
+     * @param a the array of step sizes (must not be null or empty)
+     * @return an array where element i is true if position i can be reached from index 0
+     * <p>
+     * Time complexity: O(n)
+     * Space complexity: O(n)
      */
-    private static boolean isWay(int[] a, int i) {
-        if (i > a.length - 1 || i < 0 || a[i] == 0) return false;
-
-        if (i == a.length - 1) return true;
+    public static boolean[] reachable(int[] a) {
+        int[] parent = jumpParents(a);
+        boolean[] result = new boolean[a.length];
+        for (int i = 0; i < a.length; i++) {
+            result[i] = parent[i] != -1;
+        }
+        return result;
+    }
 
-        int k = a[i];
-        a[i] = 0;
-        boolean right = isWay(a, i + k);
-        boolean left = isWay(a, i - k);
-        a[i] = k;
+    /**
+     * Finds a shortest sequence of jumps from index 0 to the given position, with the jump rules of isWay.
+     *
+     * @param a      the array of step sizes (must not be null or empty)
+     * @param target the position to reach
+     * @return the visited positions in order, starting with 0 and ending with target, or null if target cannot be reached
+     * <p>
+     * Time complexity: O(n)
+     * Space complexity: O(n)
+     */
+    public static int[] wayPath(int[] a, int target) {
+        int[] parent = jumpParents(a);
+        if (target < 0 || target >= a.length || parent[target] == -1) return null;
+        int length = 1;
+        for (int i = target; i != 0; i = parent[i]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int i = target; length > 0; i = parent[i]) {
+            path[--length] = i;
+        }
+        return path;
+    }
 
-        return right || left;
+    /**
+     * Helper method that runs the breadth-first search over the jump graph from index 0.
+     * <p>
+     * Every position i has edges to i + a[i] and i - a[i]. Positions holding 0 are never entered.
+     *
+     * @param a the array of step sizes (not modified)
+     * @return for every position, the position it was first reached from (0 for index 0 itself),
+     * or -1 if it cannot be reached
+     */
+    private static int[] jumpParents(int[] a) {
+        int[] parent = new int[a.length];
+        Arrays.fill(parent, -1);
+        if (a[0] == 0) return parent;
+        int[] queue = new int[a.length];
+        int head = 0;
+        int tail = 0;
+        parent[0] = 0;
+        queue[tail++] = 0;
+        while (head < tail) {
+            int i = queue[head++];
+            for (int k = 0; k < 2; k++) {
+                int j = k == 0 ? i + a[i] : i - a[i]; // jump right, then left
+                if (j >= 0 && j < a.length && a[j] != 0 && parent[j] == -1) {
+                    parent[j] = i;
+                    queue[tail++] = j;
+                }
+            }
+        }
+        return parent;
     }
 
     /**
@@ -149,52 +459,56 @@ public class Ex13 {
      * - The prince can move to adjacent cells (up, down, left, right)
      * - Movement is only allowed if the new cell's value is within the range [previous-2, previous+1]
      * - The goal is to reach a cell with value -1 (evil entity)
-     * - -2 represents visited cells (temporary marking during traversal)
+     * - Cells with value -2 cannot be entered
+     * <p>
+     * Algorithm: breadth-first search from the starting cell. Cells are visited in order of their distance,
+     * so the first time a -1 cell is reached its distance is the shortest one. The dungeon is not modified.
      *
-     * @param drm the 2D dungeon array representing the maze (must be square and non-null)
+     * @param drm the 2D dungeon array representing the maze (rectangular or jagged, must be non-null)
      * @param i   the starting row position of the prince
      * @param j   the starting column position of the prince
-     * @return the minimum number of moves to reach the evil entity, or -1 if no path exists
-     * @throws IllegalArgumentException if the dungeon is null or starting position is invalid
-     *                                  <p>
-     *                                  Time complexity: O(4^(n*m)) in worst case due to recursive exploration
-     *                                  Space complexity: O(n*m) for recursion stack depth
+     * @return the number of cells on the shortest path, counting the starting cell and the evil entity,
+     * or -1 if no path exists
+     * <p>
+     * Time complexity: O(n*m) - every cell is visited at most once
+     * Space complexity: O(n*m) for the distances and the queue
      */
     public static int prince(int[][] drm, int i, int j) {
-        int result = prince(drm, i, j, drm[i][j]);
-        if (result >= drm.length * drm.length + 1) return -1;
-        else return result;
-    }
-
-    /**
-     * Recursive helper method that implements the core pathfinding algorithm for the prince.
-     * <p>
-     * This method performs depth-first search with backtracking to find the shortest path
-     * to the evil entity. It temporarily marks visited cells with -2 to prevent cycles,
-     * then restores the original value after exploring all directions.
-     *
-     * @param drm the 2D dungeon array (modified temporarily during recursion)
-     * @param i   the current row position
-     * @param j   the current column position
-     * @param pre the terrain value of the previous cell (used for movement validation)
-     * @return the minimum number of moves from current position to evil entity,
-     * or a large number (n*n+1) if no valid path exists
-     */
-    private static int prince(int[][] drm, int i, int j, int pre) {
-        if (i < 0 || i > drm.length - 1 || j < 0 || j > drm[0].length - 1 || drm[i][j] == -2)
-            return drm.length * drm.length + 1;
+        if (drm[i][j] == -2) return -1;
         if (drm[i][j] == -1) return 1;
-        if (drm[i][j] > pre + 1 || drm[i][j] < pre - 2) return drm.length * drm.length + 1;
 
-        int temp = drm[i][j];
-        drm[i][j] = -2;
-        int up = 1 + prince(drm, i - 1, j, temp);
-        int down = 1 + prince(drm, i + 1, j, temp);
-        int left = 1 + prince(drm, i, j - 1, temp);
-        int right = 1 + prince(drm, i, j + 1, temp);
-        drm[i][j] = temp;
+        int cells = 0;
+        int[][] dist = new int[drm.length][]; // cells on the path to every visited cell, 0 for unvisited
+        for (int r = 0; r < drm.length; r++) {
+            dist[r] = new int[drm[r].length];
+            cells += drm[r].length;
+        }
+        int[] queueRow = new int[cells];
+        int[] queueCol = new int[cells];
+        int head = 0;
+        int tail = 0;
+        queueRow[tail] = i;
+        queueCol[tail++] = j;
+        dist[i][j] = 1;
 
-        return Math.min(Math.min(up, down), Math.min(left, right));
+        int[] stepRow = {-1, 1, 0, 0};
+        int[] stepCol = {0, 0, -1, 1};
+        while (head < tail) {
+            int row = queueRow[head];
+            int col = queueCol[head++];
+            int pre = drm[row][col];
+            for (int k = 0; k < 4; k++) {
+                int r = row + stepRow[k];
+                int c = col + stepCol[k];
+                if (r < 0 || r >= drm.length || c < 0 || c >= drm[r].length || dist[r][c] != 0) continue;
+                if (drm[r][c] == -1) return dist[row][col] + 1;
+                if (drm[r][c] == -2 || drm[r][c] > pre + 1 || drm[r][c] < pre - 2) continue;
+                dist[r][c] = dist[row][col] + 1;
+                queueRow[tail] = r;
+                queueCol[tail++] = c;
+            }
+        }
+        return -1;
     }
 
 }
\ No newline at end of file
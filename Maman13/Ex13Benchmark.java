@@ -0,0 +1,147 @@
+package Maman13;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Micro benchmarks comparing the Ex13 array algorithms with their high-throughput versions,
+ * including the scaling of the parallel versions from one core to all the available cores.
+ * Every benchmark is warmed up before it is measured and results are written to a sink
+ * so the JIT cannot drop the measured code.
+ * <p>
+ * Usage: java Maman13.Ex13Benchmark [size ...] (default sizes: 1000000 16000000)
+ *
+ * @author Osher Akshikar
+ * @version 2023a
+ */
+public class Ex13Benchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    private static long _sink; // consumes benchmark results
+
+    /**
+     * One benchmark: run() is timed and returns the number of elements it processed.
+     */
+    private static abstract class Bench {
+        abstract long run();
+    }
+
+    private static void measure(String name, int size, Bench bench) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            bench.run();
+        }
+        double best = Double.MAX_VALUE;
+        double total = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            long elements = bench.run();
+            double perElement = (double) (System.nanoTime() - start) / Math.max(elements, 1);
+            best = Math.min(best, perElement);
+            total += perElement;
+        }
+        System.out.printf("%-40s %10d %14.3f %14.3f%n", name, size, total / MEASURED_ROUNDS, best);
+    }
+
+    private static void alternatingBenchmarks(int size) {
+        Random rnd = new Random(size);
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = rnd.nextBoolean() ? '1' : '0';
+        }
+        final String s = new String(chars);
+        final byte[] bytes = s.getBytes();
+        final long[] bits = Ex13.packBinary(s);
+        final int length = s.length();
+
+        measure("Ex13.alternating(String)", size, new Bench() {
+            long run() {
+                _sink += Ex13.alternating(s);
+                return length;
+            }
+        });
+        measure("Ex13.alternating(byte[])", size, new Bench() {
+            long run() {
+                _sink += Ex13.alternating(bytes);
+                return length;
+            }
+        });
+        measure("Ex13.alternating(long[], int)", size, new Bench() {
+            long run() {
+                _sink += Ex13.alternating(bits, length);
+                return length;
+            }
+        });
+    }
+
+    private static void whatBenchmarks(int size) {
+        Random rnd = new Random(size);
+        final int[] a = new int[size];
+        for (int i = 0; i < size; i++) {
+            a[i] = rnd.nextInt(1000) * 2; // even elements ...
+        }
+        a[size / 3] = 1; // ... and two odd ones in the middle, so no scan can stop early
+        a[size / 2] = 3;
+        a[size - 1] = 5; // odd sum
+
+        measure("Ex13.what", size, new Bench() {
+            long run() {
+                _sink += Ex13.what(a);
+                return a.length;
+            }
+        });
+        measure("Ex13.whatUnrolled", size, new Bench() {
+            long run() {
+                _sink += Ex13.whatUnrolled(a);
+                return a.length;
+            }
+        });
+    }
+
+    private static void parallelBenchmarks(int size) {
+        Random rnd = new Random(size);
+        char[] chars = new char[size];
+        final int[] a = new int[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = rnd.nextBoolean() ? '1' : '0';
+            a[i] = rnd.nextInt(1000) * 2;
+        }
+        a[size / 3] = 1;
+        a[size - 1] = 3;
+        final String s = new String(chars);
+
+        for (int cores = 1; cores <= Runtime.getRuntime().availableProcessors(); cores *= 2) {
+            final ForkJoinPool pool = new ForkJoinPool(cores);
+            measure("Ex13.whatParallel (" + cores + " cores)", size, new Bench() {
+                long run() {
+                    _sink += Ex13.whatParallel(a, pool);
+                    return a.length;
+                }
+            });
+            measure("Ex13.alternatingParallel (" + cores + " cores)", size, new Bench() {
+                long run() {
+                    _sink += Ex13.alternatingParallel(s, pool);
+                    return s.length();
+                }
+            });
+            pool.shutdown();
+        }
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = {1000000, 16000000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.printf("%-40s %10s %14s %14s%n", "Benchmark", "Size", "Avg ns/elem", "Best ns/elem");
+        for (int size : sizes) {
+            alternatingBenchmarks(size);
+            whatBenchmarks(size);
+            parallelBenchmarks(size);
+        }
+        System.out.println("(sink " + _sink + ")");
+    }
+}
@@ -0,0 +1,326 @@
+package Maman13;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Regression tester for the Ex13 search methods.
+ * Every method is compared with the original recursive solution of the exercise on many small random inputs,
+ * PrinceDistances with a full search after every random edit, and the unrolled, bit-packed and parallel versions
+ * with the plain ones.
+ */
+public class Ex13Tester {
+    private static final int RANDOM_CASES = 20000;
+
+    private static int totalTests = 0;
+    private static int passedTests = 0;
+
+    // Helper method to check test results
+    private static void checkTest(String testName, boolean expected, boolean actual) {
+        totalTests++;
+        if (expected == actual) {
+            System.out.println("✓ PASS: " + testName);
+            passedTests++;
+        } else {
+            System.out.println("✗ FAIL: " + testName + " (Expected: " + expected + ", Got: " + actual + ")");
+        }
+    }
+
+    private static void checkTest(String testName, int expected, int actual) {
+        totalTests++;
+        if (expected == actual) {
+            System.out.println("✓ PASS: " + testName);
+            passedTests++;
+        } else {
+            System.out.println("✗ FAIL: " + testName + " (Expected: " + expected + ", Got: " + actual + ")");
+        }
+    }
+
+    private static void printTestSummary() {
+        String separator = "==================================================";
+        System.out.println("\n" + separator);
+        System.out.println("TEST SUMMARY");
+        System.out.println(separator);
+        System.out.println("Total Tests: " + totalTests);
+        System.out.println("Passed: " + passedTests);
+        System.out.println("Failed: " + (totalTests - passedTests));
+        System.out.println(separator);
+    }
+
+    public static void main(String[] args) {
+        System.out.println("Starting Ex13 Test Suite...\n");
+        Random random = new Random(2023);
+
+        //-----------------------Prince Tests---------------------
+        System.out.println("=== PRINCE TESTS ===\n");
+
+        int[][] dungeon = {
+                {2, 0, 1, 2, 3},
+                {2, 3, 5, 5, 4},
+                {8, -1, 6, 8, 7},
+                {3, 4, 7, 2, 4},
+                {2, 4, 3, 1, 2}
+        };
+        checkTest("Prince - example from the exercise", 4, Ex13.prince(dungeon, 0, 0));
+        checkTest("Prince - start on the evil entity", 1, Ex13.prince(dungeon, 2, 1));
+        int[][] wide = {{0, 1, 2, 3, -1}, {5, 5, 5, 5, 5}};
+        checkTest("Prince - rectangular dungeon", 5, Ex13.prince(wide, 0, 0));
+
+        int princeMismatches = 0;
+        int princeChanged = 0;
+        for (int t = 0; t < RANDOM_CASES; t++) {
+            int[][] drm = randomDungeon(random, 2 + random.nextInt(4));
+            int i = random.nextInt(drm.length);
+            int j = random.nextInt(drm.length);
+            int[][] before = copy(drm);
+            if (Ex13.prince(drm, i, j) != recursivePrince(copy(drm), i, j))
+                princeMismatches++;
+            if (!Arrays.deepEquals(before, drm))
+                princeChanged++;
+        }
+        checkTest("Prince - same answers as the recursive search", 0, princeMismatches);
+        checkTest("Prince - dungeon not modified", 0, princeChanged);
+
+        //-----------------------Prince Distances Tests---------------------
+        System.out.println("\n=== PRINCE DISTANCES TESTS ===\n");
+
+        PrinceDistances example = new PrinceDistances(dungeon);
+        checkTest("Distances - example from the exercise", 4, example.distance(0, 0));
+        example.setCell(2, 1, -2); // the only evil entity is blocked
+        checkTest("Distances - no path after the entity is removed", -1, example.distance(0, 0));
+        example.setCell(0, 1, -1);
+        checkTest("Distances - new entity next to the start", 2, example.distance(0, 0));
+
+        int fieldMismatches = 0;
+        int editMismatches = 0;
+        for (int t = 0; t < RANDOM_CASES / 20; t++) {
+            int[][] drm = randomDungeon(random, 2 + random.nextInt(7));
+            PrinceDistances distances = new PrinceDistances(drm);
+            if (!sameDistances(distances, drm))
+                fieldMismatches++;
+            for (int edit = 0; edit < 20; edit++) {
+                int i = random.nextInt(drm.length);
+                int j = random.nextInt(drm.length);
+                int value = random.nextInt(8) == 0 ? -1 : random.nextInt(10) == 0 ? -2 : random.nextInt(4);
+                drm[i][j] = value;
+                distances.setCell(i, j, value);
+                if (!sameDistances(distances, drm)) // compared with a full search of the edited dungeon
+                    editMismatches++;
+            }
+        }
+        checkTest("Distances - same answers as prince for every cell", 0, fieldMismatches);
+        checkTest("Distances - same answers after random edits", 0, editMismatches);
+
+        //-----------------------Jump Path Tests---------------------
+        System.out.println("\n=== JUMP PATH TESTS ===\n");
+
+        checkTest("Is way - example from the exercise", true, Ex13.isWay(new int[]{2, 4, 1, 6, 4, 2, 4, 3, 5}));
+        checkTest("Is way - no way", false, Ex13.isWay(new int[]{1, 4, 3, 1, 2, 4, 3}));
+        checkTest("Is way - one element", true, Ex13.isWay(new int[]{0}));
+        int[] path = Ex13.wayPath(new int[]{2, 4, 1, 6, 4, 2, 4, 3, 5}, 8);
+        checkTest("Way path - shortest path of the example", 7, path.length); // 0, 2, 1, 5, 7, 4, 8
+
+        int wayMismatches = 0;
+        int reachMismatches = 0;
+        int pathMismatches = 0;
+        for (int t = 0; t < RANDOM_CASES; t++) {
+            int[] a = new int[1 + random.nextInt(12)];
+            for (int k = 0; k < a.length; k++)
+                a[k] = random.nextInt(8) - 2; // zeros and negative steps included
+            int[] before = a.clone();
+            if (Ex13.isWay(a) != (a.length == 1 || recursiveWay(a.clone(), 0, a.length - 1)))
+                wayMismatches++;
+            boolean[] reach = Ex13.reachable(a);
+            int[] distances = jumpDistances(a);
+            for (int target = 0; target < a.length; target++) {
+                if (reach[target] != recursiveWay(a.clone(), 0, target))
+                    reachMismatches++;
+                if (!isShortestPath(a, Ex13.wayPath(a, target), target, distances[target]))
+                    pathMismatches++;
+            }
+            if (!Arrays.equals(before, a))
+                wayMismatches++; // the array must not be modified
+        }
+        checkTest("Is way - same answers as the recursive search", 0, wayMismatches);
+        checkTest("Reachable - same answers as the recursive search", 0, reachMismatches);
+        checkTest("Way path - valid and shortest", 0, pathMismatches);
+
+        //-----------------------Unrolled And Packed Tests---------------------
+        System.out.println("\n=== UNROLLED AND PACKED TESTS ===\n");
+
+        checkTest("What unrolled - empty array", Ex13.what(new int[0]), Ex13.whatUnrolled(new int[0]));
+        checkTest("What unrolled - one odd element", Ex13.what(new int[]{-3}), Ex13.whatUnrolled(new int[]{-3}));
+        checkTest("Alternating bytes - empty string", 0, Ex13.alternating(new byte[0]));
+        checkTest("Alternating packed - empty string", 0, Ex13.alternating(Ex13.packBinary(""), 0));
+        checkTest("Alternating bytes - one character", Ex13.alternating("1"), Ex13.alternating("1".getBytes(StandardCharsets.US_ASCII)));
+
+        int whatMismatches = 0;
+        int bytesMismatches = 0;
+        int packedMismatches = 0;
+        for (int t = 0; t < RANDOM_CASES; t++) {
+            int n = random.nextInt(200); // lengths around the unroll width of 4 and 8 and the word width of 64
+            int[] a = new int[n];
+            int oddChance = 1 + random.nextInt(n + 1); // from mostly odd to at most a few odd elements
+            for (int k = 0; k < n; k++)
+                a[k] = 2 * (random.nextInt(201) - 100) + (random.nextInt(oddChance) == 0 ? 1 : 0);
+            if (Ex13.whatUnrolled(a) != Ex13.what(a))
+                whatMismatches++;
+
+            String s = randomBinary(random, n);
+            int expected = Ex13.alternating(s);
+            if (Ex13.alternating(s.getBytes(StandardCharsets.US_ASCII)) != expected)
+                bytesMismatches++;
+            long[] bits = Ex13.packBinary(s);
+            if (bits.length != (n + 63) / 64 || Ex13.alternating(bits, n) != expected)
+                packedMismatches++;
+        }
+        checkTest("What unrolled - same answers as what", 0, whatMismatches);
+        checkTest("Alternating bytes - same answers as the string version", 0, bytesMismatches);
+        checkTest("Alternating packed - same answers as the string version", 0, packedMismatches);
+
+        //-----------------------Parallel Tests---------------------
+        System.out.println("\n=== PARALLEL TESTS ===\n");
+
+        int threshold = Ex13.PARALLEL_THRESHOLD;
+        int[] lengths = {0, 1, 7, threshold - 1, threshold, threshold + 1, 2 * threshold + 3, 5 * threshold + 7};
+        ForkJoinPool pool = new ForkJoinPool(4);
+        int whatParallelMismatches = 0;
+        int alternatingParallelMismatches = 0;
+        try {
+            for (int n : lengths) {
+                for (int t = 0; t < 6; t++) {
+                    int[] a = new int[n];
+                    for (int k = 0; k < n; k++)
+                        a[k] = 2 * (random.nextInt(201) - 100);
+                    // no odd element, one or two odd elements (next to chunk borders too), or many
+                    int odds = t < 4 ? t : n;
+                    for (int o = 0; o < odds && n > 0; o++) {
+                        int at = t == 3 ? Math.min(n - 1, threshold * (1 + random.nextInt(5)) - random.nextInt(2)) : random.nextInt(n);
+                        a[at] |= 1;
+                    }
+                    int expected = Ex13.what(a);
+                    if (Ex13.whatParallel(a) != expected || Ex13.whatParallel(a, pool) != expected)
+                        whatParallelMismatches++;
+
+                    String s = randomBinary(random, n);
+                    int expectedSwaps = Ex13.alternating(s);
+                    if (Ex13.alternatingParallel(s) != expectedSwaps || Ex13.alternatingParallel(s, pool) != expectedSwaps)
+                        alternatingParallelMismatches++;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        checkTest("What parallel - same answers as what, below and above the threshold", 0, whatParallelMismatches);
+        checkTest("Alternating parallel - same answers as the sequential version", 0, alternatingParallelMismatches);
+
+        printTestSummary();
+    }
+
+    private static String randomBinary(Random random, int n) { // runs of equal characters and random characters
+        StringBuilder s = new StringBuilder(n);
+        boolean runs = random.nextBoolean();
+        for (int k = 0; k < n; k++)
+            s.append(runs && k > 0 && random.nextInt(8) != 0 ? s.charAt(k - 1) : random.nextBoolean() ? '1' : '0');
+        return s.toString();
+    }
+
+    private static int[][] randomDungeon(Random random, int n) { // terrain -2..3 and one evil entity
+        int[][] drm = new int[n][n];
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++)
+                drm[r][c] = random.nextInt(10) == 0 ? -2 : random.nextInt(4);
+        }
+        drm[random.nextInt(n)][random.nextInt(n)] = -1;
+        return drm;
+    }
+
+    private static int[][] copy(int[][] drm) {
+        int[][] result = new int[drm.length][];
+        for (int r = 0; r < drm.length; r++)
+            result[r] = drm[r].clone();
+        return result;
+    }
+
+    private static boolean sameDistances(PrinceDistances distances, int[][] drm) { // every cell against a new search
+        PrinceDistances fresh = new PrinceDistances(drm);
+        for (int r = 0; r < drm.length; r++) {
+            for (int c = 0; c < drm[r].length; c++) {
+                if (distances.distance(r, c) != fresh.distance(r, c) || distances.distance(r, c) != Ex13.prince(drm, r, c))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    // The original depth-first search of the exercise, for square dungeons
+    private static int recursivePrince(int[][] drm, int i, int j) {
+        int result = recursivePrince(drm, i, j, drm[i][j]);
+        return result >= drm.length * drm.length + 1 ? -1 : result;
+    }
+
+    private static int recursivePrince(int[][] drm, int i, int j, int pre) {
+        if (i < 0 || i > drm.length - 1 || j < 0 || j > drm[0].length - 1 || drm[i][j] == -2)
+            return drm.length * drm.length + 1;
+        if (drm[i][j] == -1) return 1;
+        if (drm[i][j] > pre + 1 || drm[i][j] < pre - 2) return drm.length * drm.length + 1;
+
+        int temp = drm[i][j];
+        drm[i][j] = -2;
+        int up = 1 + recursivePrince(drm, i - 1, j, temp);
+        int down = 1 + recursivePrince(drm, i + 1, j, temp);
+        int left = 1 + recursivePrince(drm, i, j - 1, temp);
+        int right = 1 + recursivePrince(drm, i, j + 1, temp);
+        drm[i][j] = temp;
+
+        return Math.min(Math.min(up, down), Math.min(left, right));
+    }
+
+    // The original backtracking search of the exercise, with any target position instead of the last one
+    private static boolean recursiveWay(int[] a, int i, int target) {
+        if (i > a.length - 1 || i < 0 || a[i] == 0) return false;
+
+        if (i == target) return true;
+
+        int k = a[i];
+        a[i] = 0;
+        boolean right = recursiveWay(a, i + k, target);
+        boolean left = recursiveWay(a, i - k, target);
+        a[i] = k;
+
+        return right || left;
+    }
+
+    // The number of jumps from 0 to every position (-1 if unreachable), by relaxing every edge until nothing changes
+    private static int[] jumpDistances(int[] a) {
+        int[] dist = new int[a.length];
+        Arrays.fill(dist, -1);
+        if (a[0] == 0) return dist;
+        dist[0] = 0;
+        for (boolean changed = true; changed; ) {
+            changed = false;
+            for (int i = 0; i < a.length; i++) {
+                if (dist[i] == -1) continue;
+                for (int j : new int[]{i + a[i], i - a[i]}) {
+                    if (j >= 0 && j < a.length && a[j] != 0 && (dist[j] == -1 || dist[j] > dist[i] + 1)) {
+                        dist[j] = dist[i] + 1;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return dist;
+    }
+
+    private static boolean isShortestPath(int[] a, int[] path, int target, int distance) { // null exactly when unreachable
+        if (path == null) return distance == -1;
+        if (path.length != distance + 1 || path[0] != 0 || path[path.length - 1] != target) return false;
+        for (int k = 1; k < path.length; k++) {
+            int from = path[k - 1];
+            if (a[path[k]] == 0 || Math.abs(path[k] - from) != Math.abs(a[from])) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,168 @@
+package Maman13;
+
+/**
+ * This class precomputes, for one dungeon, the answer of Ex13.prince for every starting cell.
+ * <p>
+ * The distances are found with a single reverse breadth-first search that starts from every evil entity (-1)
+ * at once and walks the prince's moves backwards: a cell u gets distance d+1 from a neighbour v at distance d
+ * if the prince may step from u into v. After that, every query is an array lookup.
+ * <p>
+ * The dungeon is copied, so later changes to the caller's array are not seen. Cells are changed through
+ * setCell, which repairs the distances around the changed cell instead of searching the whole dungeon again
+ * whenever the change can only shorten paths.
+ *
+ * @author Osher Akshikar
+ * @version 2023a
+ */
+public class PrinceDistances {
+    private static final int[] STEP_ROW = {-1, 1, 0, 0};
+    private static final int[] STEP_COL = {0, 0, -1, 1};
+
+    private int[][] _drm; // private copy of the dungeon
+    private int[][] _dist; // answer of prince for every cell, 0 if no path exists
+    private int[] _queueRow;
+    private int[] _queueCol;
+
+    /**
+     * Creates the distance field of the given dungeon.
+     * <p>
+     * Time complexity: O(n*m)
+     *
+     * @param drm the 2D dungeon array (rectangular or jagged, must be non-null)
+     */
+    public PrinceDistances(int[][] drm) {
+        int cells = 0;
+        _drm = new int[drm.length][];
+        _dist = new int[drm.length][];
+        for (int r = 0; r < drm.length; r++) {
+            _drm[r] = drm[r].clone();
+            _dist[r] = new int[drm[r].length];
+            cells += drm[r].length;
+        }
+        _queueRow = new int[cells];
+        _queueCol = new int[cells];
+        computeAll();
+    }
+
+    /**
+     * Returns the same value as Ex13.prince(drm, i, j) for the current dungeon.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param i the starting row position of the prince
+     * @param j the starting column position of the prince
+     * @return the number of cells on the shortest path, counting the starting cell and the evil entity,
+     * or -1 if no path exists
+     */
+    public int distance(int i, int j) {
+        return _dist[i][j] == 0 ? -1 : _dist[i][j];
+    }
+
+    /**
+     * Changes one cell of the dungeon and updates the distances.
+     * If the change can only add moves (or removes moves that no shortest path uses), the new distances are
+     * spread from the changed cell and only the cells that get closer are visited.
+     * Otherwise some paths may get longer and the whole field is computed again.
+     *
+     * @param i     the row of the cell
+     * @param j     the column of the cell
+     * @param value the new value of the cell
+     */
+    public void setCell(int i, int j, int value) {
+        int old = _drm[i][j];
+        if (old == value)
+            return;
+
+        // remember which moves through the cell are used by a shortest path before the change
+        boolean[] usedOut = new boolean[4];
+        boolean[] usedIn = new boolean[4];
+        for (int k = 0; k < 4; k++) {
+            int r = i + STEP_ROW[k];
+            int c = j + STEP_COL[k];
+            if (!inside(r, c))
+                continue;
+            usedOut[k] = canStep(i, j, r, c) && _dist[r][c] != 0 && _dist[i][j] == _dist[r][c] + 1;
+            usedIn[k] = canStep(r, c, i, j) && _dist[i][j] != 0 && _dist[r][c] == _dist[i][j] + 1;
+        }
+
+        _drm[i][j] = value;
+        boolean mayGetLonger = old == -1; // the cell was a target that other cells may be counting on
+        for (int k = 0; k < 4; k++) {
+            int r = i + STEP_ROW[k];
+            int c = j + STEP_COL[k];
+            if (!inside(r, c))
+                continue;
+            if ((usedOut[k] && !canStep(i, j, r, c)) || (usedIn[k] && !canStep(r, c, i, j)))
+                mayGetLonger = true;
+        }
+
+        if (mayGetLonger) {
+            computeAll();
+            return;
+        }
+
+        // only shorter paths are possible: recompute the cell itself and spread any improvement backwards
+        if (value == -1) {
+            _dist[i][j] = 1;
+        } else {
+            for (int k = 0; k < 4; k++) {
+                int r = i + STEP_ROW[k];
+                int c = j + STEP_COL[k];
+                if (inside(r, c) && canStep(i, j, r, c) && _dist[r][c] != 0 && (_dist[i][j] == 0 || _dist[r][c] + 1 < _dist[i][j]))
+                    _dist[i][j] = _dist[r][c] + 1;
+            }
+        }
+        if (_dist[i][j] != 0) {
+            _queueRow[0] = i;
+            _queueCol[0] = j;
+            spread(0, 1);
+        }
+    }
+
+    private void computeAll() { // reverse breadth-first search from every evil entity
+        int tail = 0;
+        for (int r = 0; r < _drm.length; r++) {
+            for (int c = 0; c < _drm[r].length; c++) {
+                if (_drm[r][c] == -1) {
+                    _dist[r][c] = 1;
+                    _queueRow[tail] = r;
+                    _queueCol[tail++] = c;
+                } else {
+                    _dist[r][c] = 0;
+                }
+            }
+        }
+        spread(0, tail);
+    }
+
+    private void spread(int head, int tail) { // gives every cell that can step into a queued cell a shorter distance, if it has one
+        while (head < tail) {
+            // cells are taken in order of distance, so a cell improves at most once and the queue never overflows
+            int row = _queueRow[head];
+            int col = _queueCol[head++];
+            for (int k = 0; k < 4; k++) {
+                int r = row + STEP_ROW[k];
+                int c = col + STEP_COL[k];
+                if (!inside(r, c) || !canStep(r, c, row, col))
+                    continue;
+                if (_dist[r][c] == 0 || _dist[row][col] + 1 < _dist[r][c]) {
+                    _dist[r][c] = _dist[row][col] + 1;
+                    _queueRow[tail] = r;
+                    _queueCol[tail++] = c;
+                }
+            }
+        }
+    }
+
+    private boolean inside(int r, int c) {
+        return r >= 0 && r < _drm.length && c >= 0 && c < _drm[r].length;
+    }
+
+    private boolean canStep(int fromRow, int fromCol, int toRow, int toCol) { // the prince's movement rule
+        int from = _drm[fromRow][fromCol];
+        int to = _drm[toRow][toCol];
+        if (from == -1 || from == -2) return false; // the walk ends at the evil entity, blocked cells are never entered
+        if (to == -1) return true;
+        return to != -2 && to <= from + 1 && to >= from - 2;
+    }
+}
@@ -0,0 +1,153 @@
+package Maman14;
+
+import java.util.HashMap;
+
+/**
+ * The booked days of one car, as a bitmap with one bit for every epoch day.
+ * The bitmap is split into chunks of 512 days that exist only while one of their days is booked,
+ * so a car costs memory only for the periods it is rented in.
+ * A rent books the days from its pick day up to the day before its return day: a car returned on
+ * some day can be picked up again on that same day.
+ * <p>
+ * Range operations work on whole 64-bit words, so they cost about (number of days)/64 steps.
+ *
+ * @author Osher Akshikar
+ * @version 2023a
+ */
+class CarCalendar {
+    private static final int CHUNK_SHIFT = 9; // 512 days in a chunk
+    private static final int CHUNK_DAYS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_WORDS = CHUNK_DAYS / 64;
+
+    private final HashMap<Integer, long[]> _chunks; // day >> CHUNK_SHIFT -> the bits of those days
+    private final int[] _typeRents; // number of rents of the car with every car type, 'A' to 'D'
+
+    /**
+     * Constructor for a car with no booked days
+     */
+    CarCalendar() {
+        _chunks = new HashMap<Integer, long[]>();
+        _typeRents = new int[4];
+    }
+
+    /**
+     * Marks the days from (inclusive) to (exclusive) as booked.
+     *
+     * @param from the first day (epoch day)
+     * @param to   the day after the last day (epoch day)
+     */
+    void book(int from, int to) {
+        for (int day = from; day < to; ) {
+            long[] words = _chunks.get(day >> CHUNK_SHIFT);
+            if (words == null) {
+                words = new long[CHUNK_WORDS];
+                _chunks.put(day >> CHUNK_SHIFT, words);
+            }
+            day = apply(words, day, to, true);
+        }
+    }
+
+    /**
+     * Marks the days from (inclusive) to (exclusive) as free, dropping the chunks that become empty.
+     *
+     * @param from the first day (epoch day)
+     * @param to   the day after the last day (epoch day)
+     */
+    void free(int from, int to) {
+        for (int day = from; day < to; ) {
+            int chunk = day >> CHUNK_SHIFT;
+            long[] words = _chunks.get(chunk);
+            if (words == null) {
+                day = (chunk + 1) << CHUNK_SHIFT;
+                continue;
+            }
+            day = apply(words, day, to, false);
+            if (isEmpty(words))
+                _chunks.remove(chunk);
+        }
+    }
+
+    /**
+     * Checks if none of the days from (inclusive) to (exclusive) is booked.
+     *
+     * @param from the first day (epoch day)
+     * @param to   the day after the last day (epoch day)
+     * @return true if all those days are free
+     */
+    boolean isFree(int from, int to) {
+        for (int day = from; day < to; ) {
+            int chunk = day >> CHUNK_SHIFT;
+            long[] words = _chunks.get(chunk);
+            int end = Math.min(to, (chunk + 1) << CHUNK_SHIFT);
+            if (words != null) {
+                for (int d = day; d < end; d = (d | 63) + 1) { // one word at a time
+                    int last = Math.min(end, (d | 63) + 1); // the day after the last day of this word in the range
+                    if ((words[(d & (CHUNK_DAYS - 1)) >> 6] & mask(d, last)) != 0)
+                        return false;
+                }
+            }
+            day = end;
+        }
+        return true;
+    }
+
+    /**
+     * Counts a rent of the car with the given car type.
+     *
+     * @param type  the car type of the rent ('A' to 'D')
+     * @param rents 1 for an added rent, -1 for a removed one
+     */
+    void countType(char type, int rents) {
+        _typeRents[type - 'A'] += rents;
+    }
+
+    /**
+     * Checks if the car has rents with the given car type.
+     *
+     * @param type the car type ('A' to 'D')
+     * @return true if one of the car's rents has that type
+     */
+    boolean hasType(char type) {
+        return type >= 'A' && type <= 'D' && _typeRents[type - 'A'] > 0;
+    }
+
+    /**
+     * Checks if the car has no rents left.
+     *
+     * @return true if no rent of the car is counted
+     */
+    boolean hasNoRents() {
+        for (int count : _typeRents) {
+            if (count > 0)
+                return false;
+        }
+        return true;
+    }
+
+    private static int apply(long[] words, int day, int to, boolean booked) { // sets or clears the range in one chunk, returns the first day after it
+        int end = Math.min(to, ((day >> CHUNK_SHIFT) + 1) << CHUNK_SHIFT);
+        for (int d = day; d < end; d = (d | 63) + 1) {
+            int last = Math.min(end, (d | 63) + 1);
+            int word = (d & (CHUNK_DAYS - 1)) >> 6;
+            if (booked)
+                words[word] |= mask(d, last);
+            else
+                words[word] &= ~mask(d, last);
+        }
+        return end;
+    }
+
+    private static long mask(int from, int to) { // the bits of the days from..to-1 inside one word
+        int count = to - from;
+        long bits = count == 64 ? -1L : (1L << count) - 1;
+        return bits << (from & 63);
+    }
+
+    private static boolean isEmpty(long[] words) {
+        for (long word : words) {
+            if (word != 0)
+                return false;
+        }
+        return true;
+    }
+}
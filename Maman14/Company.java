@@ -2,27 +2,103 @@ package Maman14;
 
 import Maman12.*;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
 /**
  * The Company class represents a car rental company using a linked list and therefore
  * There is no limit here on the number of rentals represented in the list.
+ * The list is kept in chronological order and mirrored by a balanced tree index
+ * (ordered by pick date, longer rent first, then insertion order) used to find insert positions and duplicates.
+ * A second index groups the nodes by return date so rents can be removed without scanning the list,
+ * and a hash index over the rents' contents answers duplicate and membership checks.
+ * The number of rents, the sums of days and prices and the counts of car types and gears are kept up to date on
+ * every change to the list.
+ * Large inputs (iterators, streams or CSV files) are loaded with addAll, which sorts them in batches and
+ * splices every batch into the list in one pass, like merge.
+ * Rents picked between two dates, or active on a day, are returned by lazy iterators that seek through the
+ * chronological index or an interval tree over all the rents.
+ * Interval trees (per renter and car, per car id and over all the rents), per car day bitmaps, order-statistics trees (by length
+ * and by return date) and brand and renter sketches are built by the first query that needs them and kept up to
+ * date from then on.
  *
  * @author Osher Akshikar
  * @version 2023a
  */
 public class Company {
+    private static final int BULK_BATCH = 1 << 20; // rents sorted and spliced together by addAll
+    private static final int PRICE_BATCH = 4096; // rents priced together by getSumOfPrices(PriceTable)
+    private static final int WRITE_BLOCK = 1 << 15; // characters collected by writeTo before every write
+
     private RentNode _head;
+    private TreeSet<RentNode> _order; // the same nodes as the list, in the same order
+    private HashMap<Integer, TreeSet<RentNode>> _byReturnDay; // return epoch day -> nodes returned that day, in list order
+    private HashMap<Rent, RentNode> _byContent; // the stored rent of every node -> its node
+    private HashMap<Holder, IntervalTree> _byHolder; // renter and car -> their rents, built by the first overlap query
+    private HashMap<Integer, IntervalTree> _byCar; // car id -> rents of that car, built by the first holdersOf or availability query
+    private IntervalTree _byDay; // every node, built by the first rentalsActiveOn
+    private HashMap<Integer, CarCalendar> _calendars; // car id -> its booked days, built by the first availability query
+    private RankTree _byLength; // every node, longest first, built by the first length query
+    private RankTree _byReturn; // every node, latest return first, built by the first return date query
+    private FrequencySketch _brands; // rents of every brand, built with _renters by the first brand or renter query
+    private FrequencySketch _renters; // rents of every renter name
+    private int _sketchRemovals; // rents removed since the sketches were built
+    private boolean _rejectConflicts; // addRent refuses rents of a car that is already booked on one of their days
+    private long _lastSeq; // insertion sequence of the last added node
+    private int _modCount; // number of changes to the list, checked by the date-range iterators
+    private int _numOfRents;
+    private int _sumOfDays;
+    private int _sumOfPrices;
+    private int[] _typeCounts; // number of rents of every car type, 'A' to 'D'
+    private int _manualRents; // number of rents of manual cars
 
     /**
      * Constructor to initialize the _head variable to null.
      */
     public Company() {
         _head = null;
+        _order = new TreeSet<RentNode>(RentNode.CHRONOLOGICAL);
+        _byReturnDay = new HashMap<Integer, TreeSet<RentNode>>();
+        _byContent = new HashMap<Rent, RentNode>();
+        _byHolder = null;
+        _byCar = null;
+        _byDay = null;
+        _calendars = null;
+        _byLength = null;
+        _byReturn = null;
+        _brands = null;
+        _renters = null;
+        _sketchRemovals = 0;
+        _rejectConflicts = false;
+        _lastSeq = 0;
+        _modCount = 0;
+        _numOfRents = 0;
+        _sumOfDays = 0;
+        _sumOfPrices = 0;
+        _typeCounts = new int[4];
+        _manualRents = 0;
     }
 
     /**
      * This method adds a new Rent to the Company's list of Rentals
-     * This method checks if the new RentNode should be set as the head of the list ,
-     * or if it should be placed in correct chronological order
+     * The place of the new RentNode in chronological order is found through the chronological index
+     * and duplicates through the hash index, so an insert costs O(log n) instead of a scan of the list.
      * If the new Rent is already present in the company's list, the method returns false.
      *
      * @param name  - car name
@@ -39,89 +115,116 @@ public class Company {
         Rent newRent = new Rent(name, c, start, end); //creating new object rent
         RentNode newNodeRent = new RentNode(newRent); //creating new node
 
-        if (_head == null) { //in case of empty list
-            _head = newNodeRent;
-            return true;
-        }
-
-        // Check if new node should be the new head
-        if (shouldComeBefore(newNodeRent, _head)) {
-            newNodeRent.setNext(_head);
-            _head = newNodeRent;
-            return true;
-        }
-
-        // Check for duplicates and find insertion point
-        RentNode current = _head;
-        while (current.getNext() != null) {
-            if (current.getRent().equals(newRent)) // Check for duplicate
-                return false;
-
-            if (shouldComeBefore(newNodeRent, current.getNext())) {
-                // Insert between current and current.next
-                newNodeRent.setNext(current.getNext());
-                current.setNext(newNodeRent);
-                return true;
-            }
-            current = current.getNext();
-        }
-
-        // Check last node for duplicate
-        if (current.getRent().equals(newRent))
+        if (_byContent.containsKey(newRent) || isConflict(newNodeRent)) // Check for duplicate, or a booked car in strict mode
             return false;
 
-        // Add at the end
-        current.setNext(newNodeRent);
+        newNodeRent.setSeq(++_lastSeq); // equal rents keep the order they were added in
+        link(_order.lower(newNodeRent), newNodeRent);
         return true;
     }
 
-    private boolean shouldComeBefore(RentNode first, RentNode second) { // Method to check if first rent should come before second rent
-        Date pickFirst = first.getRent().getPickDate(); // Date pickFirst gets the rent date of first Node
-        Date pickSecond = second.getRent().getPickDate(); // Date pickSecond gets the rent date of second Node
-
-        if (pickFirst.before(pickSecond))
-            return true; //return true if the first rent date is before second rent
-        if (pickFirst.after(pickSecond))
-            return false; //return false if second rent date is before the first rent
-
-        int daysFirst = first.getRent().howManyDays();//checks rent duration if pick dates are the same
-        int daysSecond = second.getRent().howManyDays();
+    private void link(RentNode prev, RentNode node) { // splices node into the list after prev (null means at the head)
+        if (prev == null) {
+            node.setNext(_head);
+            _head = node;
+        } else {
+            node.setNext(prev.getNext());
+            prev.setNext(node);
+        }
+        _order.add(node);
+        TreeSet<RentNode> sameDay = _byReturnDay.get(node.getReturnDay());
+        if (sameDay == null) {
+            sameDay = new TreeSet<RentNode>(RentNode.CHRONOLOGICAL);
+            _byReturnDay.put(node.getReturnDay(), sameDay);
+        }
+        sameDay.add(node);
+        _byContent.put(node.peekRent(), node);
+        if (_byHolder != null)
+            treeOf(_byHolder, new Holder(node.peekRent())).add(node);
+        if (_byCar != null)
+            treeOf(_byCar, node.peekRent().getCarId()).add(node);
+        if (_byDay != null)
+            _byDay.add(node);
+        if (_calendars != null)
+            book(node);
+        if (_byLength != null)
+            _byLength.add(node);
+        if (_byReturn != null)
+            _byReturn.add(node);
+        if (_brands != null)
+            countNames(node, true);
+        countCar(node.peekRent(), 1);
+        _modCount++;
+        _numOfRents++;
+        _sumOfDays += node.getDays();
+        _sumOfPrices += node.peekRent().getPrice();
+    }
 
-        return daysFirst > daysSecond; //return if the first Node should be before the second Node based on duration
+    private void unlink(RentNode prev, RentNode node) { // removes node from the list, prev is the node before it (null if node is the head)
+        if (prev == null)
+            _head = node.getNext();
+        else
+            prev.setNext(node.getNext());
+        node.setNext(null);
+        _order.remove(node);
+        TreeSet<RentNode> sameDay = _byReturnDay.get(node.getReturnDay());
+        sameDay.remove(node);
+        if (sameDay.isEmpty())
+            _byReturnDay.remove(node.getReturnDay());
+        _byContent.remove(node.peekRent());
+        if (_byHolder != null)
+            removeFrom(_byHolder, new Holder(node.peekRent()), node);
+        if (_byCar != null)
+            removeFrom(_byCar, node.peekRent().getCarId(), node);
+        if (_byDay != null)
+            _byDay.remove(node);
+        if (_calendars != null)
+            unbook(node);
+        if (_byLength != null)
+            _byLength.remove(node);
+        if (_byReturn != null)
+            _byReturn.remove(node);
+        if (_brands != null) {
+            countNames(node, false);
+            if (2 * ++_sketchRemovals > _numOfRents && (_brands.hasReplaced() || _renters.hasReplaced())) {
+                _brands = null; // rebuilt from the rents left by the next query, see mostRentedBrands
+                _renters = null;
+            }
+        }
+        countCar(node.peekRent(), -1);
+        _modCount++;
+        _numOfRents--;
+        _sumOfDays -= node.getDays();
+        _sumOfPrices -= node.peekRent().getPrice();
     }
 
     /**
      * Removes a RentNode from the linked list based on the return date of the Rent object inside the node
+     * If several rents are returned on that date, the first one in the list is removed.
+     * The node is found through the return date index, so the list is not scanned.
      *
      * @param d the return date of the Rent object to be removed
      * @return true if a RentNode was removed,false otherwise.
      */
     public boolean removeRent(Date d) {
-        if (_head == null) // in case of empty list
+        if (d == null)
             return false;
+        TreeSet<RentNode> sameDay = _byReturnDay.get(d.toEpochDay());
+        if (sameDay == null) // no rent is returned on that date
+            return false;
+        RentNode cancel = sameDay.first();
+        unlink(_order.lower(cancel), cancel);
+        return true;
+    }
 
-        else {
-            RentNode behind = _head;
-
-            if (_head.getRent().getReturnDate().equals(d)) { //checks if the first Node equals the date
-                _head = _head.getNext();
-                behind.setNext(null);
-                return true;
-            } else {
-                while (behind.getNext() != null) { // check the rest of Node list
-                    if (behind.getNext().getRent().getReturnDate().equals(d)) {
-                        RentNode cancel = behind.getNext();
-                        behind.setNext(cancel.getNext());
-                        cancel.setNext(null);
-                        return true;
-                    } else
-                        behind = behind.getNext();
-                }//end of while
-                return false; // reached to end and didn;t found the date given
-            }//end of else
-
-        }//end of (list is not empty)
-    }//end of method
+    /**
+     * Returns the first node of the list, for classes of this package that read the whole list
+     *
+     * @return the head of the list, null if there are no rents
+     */
+    RentNode getHead() {
+        return _head;
+    }
 
     /**
      * This method is used to get the number of rentals made by the company
@@ -129,13 +232,7 @@ public class Company {
      * @return int, the number of rentals made
      */
     public int getNumOfRents() {
-        RentNode temp = _head;
-        int count = 0;
-        while (temp != null) {
-            count++;
-            temp = temp.getNext();
-        }
-        return count;
+        return _numOfRents;
     }
 
     /**
@@ -144,13 +241,34 @@ public class Company {
      * @return the total sum of prices in the company
      */
     public int getSumOfPrices() {
-        RentNode temp = _head;
-        int prices = 0;
-        while (temp != null) {
-            prices += temp.getRent().getPrice();
-            temp = temp.getNext();
+        return _sumOfPrices;
+    }
+
+    /**
+     * Reprices every rent of the company with another price table and returns the total.
+     * The car types and lengths are copied from the list into small arrays that are priced in one pass each,
+     * the rents themselves are not copied.
+     * <p>
+     * Time complexity: O(n)
+     *
+     * @param prices the price table to use, for example a table of a new tariff card
+     * @return the total sum of the rents' prices under that table
+     */
+    public long getSumOfPrices(PriceTable prices) {
+        char[] types = new char[PRICE_BATCH];
+        int[] days = new int[PRICE_BATCH];
+        int[] out = new int[PRICE_BATCH];
+        long sum = 0;
+        int n = 0;
+        for (RentNode curr = _head; curr != null; curr = curr.getNext()) {
+            types[n] = curr.peekRent().getCarType();
+            days[n++] = curr.getDays();
+            if (n == PRICE_BATCH) {
+                sum += prices.priceAll(types, days, out, n);
+                n = 0;
+            }
         }
-        return prices;
+        return sum + prices.priceAll(types, days, out, n);
     }
 
     /**
@@ -159,13 +277,7 @@ public class Company {
      * @return int - the total number of days of all the rents in the company.
      */
     public int getSumOfDays() {
-        RentNode temp = _head;
-        int days = 0;
-        while (temp != null) {
-            days += temp.getRent().howManyDays();
-            temp = temp.getNext();
-        }
-        return days;
+        return _sumOfDays;
     }
 
     /**
@@ -173,51 +285,131 @@ public class Company {
      * If there are no rents, returns 0.
      */
     public double averageRent() {
-        if (_head == null)
+        if (_numOfRents == 0)
             return 0;
-        return (double) getSumOfDays() / getNumOfRents();
+        return (double) _sumOfDays / _numOfRents;
     }
 
     /**
-     * This method returns the last rented car from the list of rents in the company.
-     * If there are no rents in the company, the method returns 'null'.
+     * This method returns the car of the rent with the latest return date in the company,
+     * the first such rent in the list if there are several.
+     * The first call sorts the rents by return date in an order-statistics tree, later calls and changes keep it up to date,
+     * so the method costs O(log n).
      *
      * @return the last rented car or null if there are no rents
      */
     public Car lastCarRent() {
         if (_head == null)
             return null; // no rents
-        RentNode curr = _head;
-        Rent lastRent = curr.getRent();
-        while (curr != null) { //end of loop
-            if (curr.getRent().getReturnDate().after(lastRent.getReturnDate())) { //check if curr return date is after last date if it is last date gets curr return date
-                lastRent = curr.getRent();
-            }
-            curr = curr.getNext();
-        }
-        return new Car(lastRent.getCar());
-
+        return returnOrder().get(0).peekRent().getCar(); // getCar returns a copy
     }
 
     /**
-     * This method is used to find the longest rent in the linked list.
+     * This method is used to find the longest rent in the linked list, the first such rent if there are several.
+     * The first call sorts the rents by length in an order-statistics tree, later calls and changes keep it up to date,
+     * so the method costs O(log n).
      *
      * @return the longest rent in the company
      */
     public Rent longestRent() {
         if (_head == null)
             return null; // no rents
-        RentNode curr = _head;
-        Rent rentLongest = curr.getRent();
-        int longest = curr.getRent().howManyDays();
-        while (curr != null) {
-            if (curr.getRent().howManyDays() > longest) {
-                longest = curr.getRent().howManyDays();
-                rentLongest = curr.getRent();
-            }
-            curr = curr.getNext();
-        }//end of while loop
-        return new Rent(rentLongest);
+        return new Rent(lengthOrder().get(0).peekRent());
+    }
+
+    /**
+     * Returns the k longest rents, longest first, rents of the same length in the order of the list.
+     * <p>
+     * Time complexity: O(k + log n) once the length tree is built
+     *
+     * @param k the number of rents to return
+     * @return copies of the k longest rents, or of all the rents if there are fewer
+     */
+    public List<Rent> longestRents(int k) {
+        return copiesOf(lengthOrder(), k);
+    }
+
+    /**
+     * Returns the k rents with the latest return dates, latest first, rents returned on the same day in the order of the list.
+     * <p>
+     * Time complexity: O(k + log n) once the return date tree is built
+     *
+     * @param k the number of rents to return
+     * @return copies of the k last returned rents, or of all the rents if there are fewer
+     */
+    public List<Rent> latestReturns(int k) {
+        return copiesOf(returnOrder(), k);
+    }
+
+    /**
+     * Counts the rents that are longer than the given number of days, which is also the position a rent of that
+     * length would take in longestRents.
+     * <p>
+     * Time complexity: O(log n) once the length tree is built
+     *
+     * @param days the number of days to compare with
+     * @return the number of rents longer than days
+     */
+    public int countLongerThan(int days) {
+        return lengthOrder().countAbove(days);
+    }
+
+    /**
+     * Returns the rent length at the given percentile: the shortest length such that at least that percent of the rents
+     * are not longer (the nearest-rank method). The 100th percentile is the longest rent.
+     * <p>
+     * Time complexity: O(log n) once the length tree is built
+     *
+     * @param percent the percentile, from 0 to 100
+     * @return the rent length at that percentile, 0 if there are no rents
+     */
+    public int rentLengthPercentile(double percent) {
+        if (_numOfRents == 0)
+            return 0;
+        int rank = (int) Math.ceil(Math.max(0, Math.min(100, percent)) / 100 * _numOfRents); // 1 is the shortest rent
+        return lengthOrder().get(_numOfRents - Math.max(rank, 1)).getDays();
+    }
+
+    /**
+     * Returns the median rent length: the middle length, or the average of the two middle lengths
+     * if the number of rents is even.
+     * <p>
+     * Time complexity: O(log n) once the length tree is built
+     *
+     * @return the median number of days, 0 if there are no rents
+     */
+    public double medianRentLength() {
+        if (_numOfRents == 0)
+            return 0;
+        RankTree lengths = lengthOrder();
+        return (lengths.get((_numOfRents - 1) / 2).getDays() + lengths.get(_numOfRents / 2).getDays()) / 2.0;
+    }
+
+    private RankTree lengthOrder() { // the length tree, built on first use
+        if (_byLength == null) {
+            _byLength = RankTree.byDays();
+            for (RentNode curr = _head; curr != null; curr = curr.getNext())
+                _byLength.add(curr);
+        }
+        return _byLength;
+    }
+
+    private RankTree returnOrder() { // the return date tree, built on first use
+        if (_byReturn == null) {
+            _byReturn = RankTree.byReturnDay();
+            for (RentNode curr = _head; curr != null; curr = curr.getNext())
+                _byReturn.add(curr);
+        }
+        return _byReturn;
+    }
+
+    private static List<Rent> copiesOf(RankTree tree, int k) {
+        List<RentNode> nodes = new ArrayList<RentNode>();
+        tree.first(Math.max(k, 0), nodes);
+        List<Rent> rents = new ArrayList<Rent>(nodes.size());
+        for (RentNode node : nodes)
+            rents.add(new Rent(node.peekRent()));
+        return rents;
     }
 
     /**
@@ -226,29 +418,10 @@ public class Company {
      * @return the most common car type as a character('A','B','C', or 'D') 'N' if the list is empty.
      */
     public char mostCommonRate() {
-        RentNode curr = _head;
-        if (curr == null) { //empty list
+        if (_head == null) { //empty list
             return 'N';
         }
-        int[] counts = new int[4];
-        while (curr != null) {
-            char type = curr.getRent().getCar().getType();
-            switch (type) {
-                case 'A':
-                    counts[0]++;
-                    break;
-                case 'B':
-                    counts[1]++;
-                    break;
-                case 'C':
-                    counts[2]++;
-                    break;
-                case 'D':
-                    counts[3]++;
-                    break;
-            }
-            curr = curr.getNext();
-        }
+        int[] counts = _typeCounts; // kept up to date on every change, so there is no scan
         int common = Math.max(Math.max(counts[0], counts[1]), Math.max(counts[2], counts[3])); // find out which car is the most common
         if (common == counts[3])
             return 'D';
@@ -260,37 +433,644 @@ public class Company {
             return 'A';
     }
 
+    /**
+     * Returns the number of rents of cars with the given type.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param type the car type ('A','B','C' or 'D')
+     * @return the number of rents with that car type, 0 for other types
+     */
+    public int countOfType(char type) {
+        return type >= 'A' && type <= 'D' ? _typeCounts[type - 'A'] : 0;
+    }
+
+    /**
+     * Returns the number of rents of cars with a manual gear.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @return the number of manual rents
+     */
+    public int countManual() {
+        return _manualRents;
+    }
+
+    /**
+     * Returns the number of rents of cars with an automatic gear.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @return the number of automatic rents
+     */
+    public int countAutomatic() {
+        return _numOfRents - _manualRents;
+    }
+
+    /**
+     * Returns the brands with the most rents, most rented first. The brands are followed by a fixed size
+     * heavy-hitter table, so the answer is approximate for companies with very many brands: the order of brands
+     * with close counts may differ from the exact one. A brand with no rents left is never returned.
+     * While at most 1024 different brands were rented since the sketches were built the table is exact. With more, every brand with more than 1/1024 of the rents
+     * added since the sketches were built is found as long as no rents are removed. Removals can hide a brand, so
+     * once the removals reach half of the rents the sketches are built again from the rents left, which finds
+     * every brand with more than 1/1024 of them again.
+     * <p>
+     * The first brand or renter query builds the sketches in O(n); after that they are kept up to date
+     * and this method costs O(k), plus the O(n) rebuild after many removals (O(1) amortized per removal).
+     *
+     * @param k the number of brands
+     * @return up to k brands
+     */
+    public List<String> mostRentedBrands(int k) {
+        buildSketches();
+        return _brands.top(k);
+    }
+
+    /**
+     * Returns the renters with the most rents, most frequent first, approximate like mostRentedBrands.
+     *
+     * @param k the number of renters
+     * @return up to k renter names
+     */
+    public List<String> mostFrequentRenters(int k) {
+        buildSketches();
+        return _renters.top(k);
+    }
+
+    /**
+     * Returns an estimate of the number of rents of a brand from a Count-Min sketch.
+     * The estimate is never below the true number, and it is exact unless other brands share its counters.
+     * <p>
+     * Time complexity: O(1) once the sketches are built
+     *
+     * @param brand the brand
+     * @return the estimated number of rents of that brand
+     */
+    public int estimatedRentsOfBrand(String brand) {
+        buildSketches();
+        return _brands.estimate(brand);
+    }
+
+    /**
+     * Returns an estimate of the number of rents of a renter, like estimatedRentsOfBrand.
+     *
+     * @param name the renter name
+     * @return the estimated number of rents of that renter
+     */
+    public int estimatedRentsOfRenter(String name) {
+        buildSketches();
+        return _renters.estimate(name);
+    }
+
+    private void countCar(Rent rent, int rents) { // the exact type and gear counters
+        char type = rent.getCarType();
+        if (type >= 'A' && type <= 'D')
+            _typeCounts[type - 'A'] += rents;
+        if (rent.isCarManual())
+            _manualRents += rents;
+    }
+
+    private void countNames(RentNode node, boolean added) { // the brand and renter sketches
+        Rent rent = node.peekRent();
+        String brand = rent.getCarBrand() == null ? "" : rent.getCarBrand();
+        if (added) {
+            _brands.add(brand);
+            _renters.add(rent.getName());
+        } else {
+            _brands.remove(brand);
+            _renters.remove(rent.getName());
+        }
+    }
+
+    private void buildSketches() { // builds the brand and renter sketches on first use, and again after many removals
+        if (_brands != null)
+            return;
+        _sketchRemovals = 0;
+        _brands = new FrequencySketch();
+        _renters = new FrequencySketch();
+        for (RentNode curr = _head; curr != null; curr = curr.getNext())
+            countNames(curr, true);
+    }
+
     /**
      * This method checks if the current company object includes all the rent objects from another company object.
+     * Every rent of the other company is looked up in the hash index, so rents with the same pick date and duration
+     * are found whatever their order in the two lists.
      *
      * @param other The other company object to be compared with the current object.
      * @return true if the current object includes all the rent objects from the other object, false otherwise.
      */
     public boolean includes(Company other) {
-        RentNode curr = _head;
-        RentNode otherNode = other._head;
-        while (otherNode != null && curr != null) {
-            if (otherNode.getRent().equals(curr.getRent())) {
-                otherNode = otherNode.getNext();
-            }
-            curr = curr.getNext();
+        if (other._numOfRents > _numOfRents)
+            return false;
+        for (RentNode otherNode = other._head; otherNode != null; otherNode = otherNode.getNext()) {
+            if (!_byContent.containsKey(otherNode.peekRent()))
+                return false;
         }
-        return otherNode == null;
+        return true;
     }
 
     /**
      * This method merges the current company object with another company object by adding all the rents from the
      * other company to the current company.
+     * Both lists are already in chronological order, so they are walked together once and every rent of the other
+     * company is spliced in where addRent would have put it. Rents already in this company are skipped.
      *
      * @param other The other company object that is being merged with the current company
      */
     public void merge(Company other) {
-        RentNode otherNode = other._head;
-        while (otherNode != null) {
-            addRent(otherNode.getRent().getName(), otherNode.getRent().getCar(), otherNode.getRent().getPickDate(), otherNode.getRent()
-                    .getReturnDate());//using addRent method written before
-            otherNode = otherNode.getNext();
+        if (other == this)
+            return; // every rent is already here
+        splice(other._head, true);
+    }
+
+    /**
+     * Returns every pair of rents that Rent.overlap would join: the same renter, equal cars and periods that
+     * share at least one day. Every pair is listed once, the earlier rent (in the company's order) first, and the
+     * pairs are ordered by their first rent and then by their second. Rents of cars with no brand (null) are
+     * matched with each other, like Car.equals does.
+     * <p>
+     * The first call builds an interval tree for every renter and car, O(n log n); later changes keep it up to date.
+     * Each rent then costs one tree query, so the method runs in O(n log n + k) for k pairs.
+     *
+     * @return copies of the overlapping rents, two in every array
+     */
+    public List<Rent[]> overlappingRents() {
+        buildHolderIndex();
+        List<Rent[]> pairs = new ArrayList<Rent[]>();
+        List<RentNode> found = new ArrayList<RentNode>();
+        for (RentNode curr = _head; curr != null; curr = curr.getNext()) {
+            found.clear();
+            _byHolder.get(new Holder(curr.peekRent())).overlapping(curr.getPickDay(), curr.getReturnDay(), found);
+            for (RentNode other : found) {
+                if (RentNode.CHRONOLOGICAL.compare(curr, other) < 0) // each pair once, from its earlier rent
+                    pairs.add(new Rent[]{new Rent(curr.peekRent()), new Rent(other.peekRent())});
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Joins the rents of every renter and car into the fewest rents that cover the same days: rents that
+     * Rent.overlap would join are replaced by their union, as many times as needed. Rents that overlap no
+     * other rent are returned as they are. A null brand is allowed and only matches another null brand.
+     * <p>
+     * Time complexity: O(n log n), O(n) more for the sweep once the index is built
+     *
+     * @return the joined rents, ordered like the company's list by the first rent of each union
+     */
+    public List<Rent> coalescedRents() {
+        buildHolderIndex();
+        final List<RentNode> starts = new ArrayList<RentNode>();
+        final HashMap<RentNode, Rent> unions = new HashMap<RentNode, Rent>();
+        List<RentNode> rents = new ArrayList<RentNode>();
+        for (IntervalTree tree : _byHolder.values()) {
+            rents.clear();
+            tree.all(rents); // by pick date, so a union only grows until the next rent starts after it
+            RentNode start = null;
+            Rent union = null;
+            for (RentNode curr : rents) {
+                Rent joined = union == null ? null : union.overlap(curr.peekRent());
+                if (joined != null) {
+                    union = joined;
+                    continue;
+                }
+                if (start != null) {
+                    starts.add(start);
+                    unions.put(start, union);
+                }
+                start = curr;
+                union = new Rent(curr.peekRent());
+            }
+            if (start != null) {
+                starts.add(start);
+                unions.put(start, union);
+            }
+        }
+        Collections.sort(starts, RentNode.CHRONOLOGICAL);
+        List<Rent> result = new ArrayList<Rent>(starts.size());
+        for (RentNode start : starts)
+            result.add(unions.get(start));
+        return result;
+    }
+
+    /**
+     * Returns the rents of the car with the given id that include the given day, from the pick date to the
+     * return date (both included, like Rent.overlap), in the company's order.
+     * <p>
+     * The first call builds an interval tree for every car, O(n log n); later changes keep it up to date.
+     * After that a query costs O(log n + k) in the usual case, k being the number of rents found.
+     *
+     * @param carId the id of the car
+     * @param d     the day to check
+     * @return copies of the rents holding the car on that day, empty if there are none
+     */
+    public List<Rent> holdersOf(int carId, Date d) {
+        buildCarIndex();
+        List<Rent> holders = new ArrayList<Rent>();
+        IntervalTree tree = _byCar.get(carId);
+        if (tree == null || d == null)
+            return holders;
+        List<RentNode> found = new ArrayList<RentNode>();
+        tree.overlapping(d.toEpochDay(), d.toEpochDay(), found);
+        for (RentNode node : found)
+            holders.add(new Rent(node.peekRent()));
+        return holders;
+    }
+
+    /**
+     * Returns the rents picked up from the first date to the second (both included), in the company's order.
+     * <p>
+     * The iterator is lazy: it finds the first of those rents through the chronological index, O(log n), and then
+     * follows the list one node at a time, stopping at the first rent picked after the second date. Going through
+     * k rents costs O(log n + k) and only the copies of the returned rents are created.
+     * The company must not change while the iterator is used (a ConcurrentModificationException is thrown).
+     *
+     * @param from the first pick date
+     * @param to   the last pick date
+     * @return an iterator over copies of the rents, empty if a date is null or from is after to
+     */
+    public Iterator<Rent> rentalsPickedBetween(Date from, Date to) {
+        if (from == null || to == null)
+            return Collections.<Rent>emptyIterator();
+        final int last = to.toEpochDay();
+        final RentNode first = _order.ceiling(RentNode.firstOfDay(from.toEpochDay()));
+        return new Iterator<Rent>() {
+            private final int _expected = _modCount;
+            private RentNode _next = first;
+
+            public boolean hasNext() {
+                checkUnchanged(_expected);
+                return _next != null && _next.getPickDay() <= last;
+            }
+
+            public Rent next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Rent rent = new Rent(_next.peekRent());
+                _next = _next.getNext();
+                return rent;
+            }
+        };
+    }
+
+    /**
+     * Returns the rents that include the given day, from the pick date to the return date (both included, like
+     * holdersOf), in the company's order.
+     * <p>
+     * The first call builds an interval tree over all the rents, O(n log n); later changes keep it up to date.
+     * The iterator is lazy: it walks the tree with a stack of its height, skipping every subtree returned before
+     * the day and every subtree picked after it, so going through k rents costs O(log n + k) in the usual case.
+     * The company must not change while the iterator is used (a ConcurrentModificationException is thrown).
+     *
+     * @param d the day to check
+     * @return an iterator over copies of the rents, empty if d is null
+     */
+    public Iterator<Rent> rentalsActiveOn(Date d) {
+        if (d == null)
+            return Collections.<Rent>emptyIterator();
+        if (_byDay == null) {
+            _byDay = new IntervalTree();
+            for (RentNode curr = _head; curr != null; curr = curr.getNext())
+                _byDay.add(curr);
+        }
+        final Iterator<RentNode> found = _byDay.overlapping(d.toEpochDay(), d.toEpochDay());
+        return new Iterator<Rent>() {
+            private final int _expected = _modCount;
+
+            public boolean hasNext() {
+                checkUnchanged(_expected);
+                return found.hasNext();
+            }
+
+            public Rent next() {
+                checkUnchanged(_expected);
+                return new Rent(found.next().peekRent());
+            }
+        };
+    }
+
+    private void checkUnchanged(int expected) { // the date-range iterators fail once the list changes under them
+        if (_modCount != expected)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * Checks if the car with the given id is free for a rent from the first date to the second: no rent of the car
+     * holds it on any day from the pick date up to the day before the return date. A car returned on the pick date
+     * counts as free, since it can be picked up again that day.
+     * <p>
+     * The first availability query builds a day bitmap for every car, O(n log n) plus the booked days / 64;
+     * later changes keep it up to date. After that a query costs about (number of days)/64 word operations.
+     *
+     * @param carId the id of the car
+     * @param from  the pick date of the rent
+     * @param to    the return date of the rent, the day after the pick date if it is not after it
+     * @return true if the car is free on all those days
+     */
+    public boolean isCarFree(int carId, Date from, Date to) {
+        if (from == null || to == null)
+            return false;
+        buildCalendars();
+        CarCalendar calendar = _calendars.get(carId);
+        int first = from.toEpochDay();
+        return calendar == null || calendar.isFree(first, Math.max(to.toEpochDay(), first + 1));
+    }
+
+    /**
+     * Returns the ids of the cars with the given type that are free on the given day.
+     * Only the cars that appear in the company's rents are known, a car counts as having the type if one of
+     * its rents has it. See isCarFree for when a car is free.
+     * <p>
+     * Time complexity: O(c log c) for c cars in the company, once the day bitmaps are built
+     *
+     * @param type the car type ('A','B','C' or 'D')
+     * @param d    the day to check
+     * @return the ids of the free cars, in increasing order
+     */
+    public List<Integer> freeCars(char type, Date d) {
+        buildCalendars();
+        List<Integer> free = new ArrayList<Integer>();
+        if (d == null)
+            return free;
+        int day = d.toEpochDay();
+        for (Map.Entry<Integer, CarCalendar> car : _calendars.entrySet()) {
+            if (car.getValue().hasType(type) && car.getValue().isFree(day, day + 1))
+                free.add(car.getKey());
         }
+        Collections.sort(free);
+        return free;
+    }
+
+    /**
+     * Sets whether addRent, addAll and merge refuse a rent whose car is already booked on one of its days
+     * (see isCarFree). Rents that conflict before this mode is turned on are kept. addAll decides conflicts in
+     * the order of its input, merge in chronological order (the earlier rent of the other company is kept).
+     *
+     * @param reject true to refuse conflicting rents, false to accept them (the default)
+     */
+    public void setRejectConflicts(boolean reject) {
+        _rejectConflicts = reject;
+        if (reject)
+            buildCalendars();
+    }
+
+    private boolean isConflict(RentNode node) { // the node's car is booked on one of its days while conflicts are refused
+        if (!_rejectConflicts)
+            return false;
+        CarCalendar calendar = _calendars.get(node.peekRent().getCarId());
+        return calendar != null && !calendar.isFree(node.getPickDay(), node.getReturnDay());
+    }
+
+    private void buildCalendars() { // builds the per car day bitmaps (and the per car trees they are repaired from) on first use
+        if (_calendars != null)
+            return;
+        buildCarIndex();
+        _calendars = new HashMap<Integer, CarCalendar>();
+        for (RentNode curr = _head; curr != null; curr = curr.getNext())
+            book(curr);
+    }
+
+    private void book(RentNode node) {
+        int carId = node.peekRent().getCarId();
+        CarCalendar calendar = _calendars.get(carId);
+        if (calendar == null) {
+            calendar = new CarCalendar();
+            _calendars.put(carId, calendar);
+        }
+        calendar.book(node.getPickDay(), node.getReturnDay());
+        calendar.countType(node.peekRent().getCarType(), 1);
+    }
+
+    private void unbook(RentNode node) { // frees the node's days, then books again the days other rents of the car still hold
+        int carId = node.peekRent().getCarId();
+        CarCalendar calendar = _calendars.get(carId);
+        calendar.countType(node.peekRent().getCarType(), -1);
+        if (calendar.hasNoRents()) {
+            _calendars.remove(carId);
+            return;
+        }
+        calendar.free(node.getPickDay(), node.getReturnDay());
+        IntervalTree others = _byCar.get(carId); // no longer holds the node
+        List<RentNode> overlapping = new ArrayList<RentNode>();
+        others.overlapping(node.getPickDay(), node.getReturnDay() - 1, overlapping);
+        for (RentNode other : overlapping)
+            calendar.book(Math.max(other.getPickDay(), node.getPickDay()), Math.min(other.getReturnDay(), node.getReturnDay()));
+    }
+
+    private void buildHolderIndex() { // builds the per renter and car trees on first use
+        if (_byHolder != null)
+            return;
+        _byHolder = new HashMap<Holder, IntervalTree>();
+        for (RentNode curr = _head; curr != null; curr = curr.getNext())
+            treeOf(_byHolder, new Holder(curr.peekRent())).add(curr);
+    }
+
+    private void buildCarIndex() { // builds the per car trees on first use
+        if (_byCar != null)
+            return;
+        _byCar = new HashMap<Integer, IntervalTree>();
+        for (RentNode curr = _head; curr != null; curr = curr.getNext())
+            treeOf(_byCar, curr.peekRent().getCarId()).add(curr);
+    }
+
+    private static <K> IntervalTree treeOf(HashMap<K, IntervalTree> trees, K key) { // the tree of the key, created if missing
+        IntervalTree tree = trees.get(key);
+        if (tree == null) {
+            tree = new IntervalTree();
+            trees.put(key, tree);
+        }
+        return tree;
+    }
+
+    private static <K> void removeFrom(HashMap<K, IntervalTree> trees, K key, RentNode node) { // drops the tree when it empties
+        IntervalTree tree = trees.get(key);
+        tree.remove(node);
+        if (tree.size() == 0)
+            trees.remove(key);
+    }
+
+    /**
+     * The renter and car of a rent, compared the way Rent.overlap compares them: the renter's name and the car's
+     * type, brand and gear (Car.equals does not compare ids). The brand may be null, as in Car.equals.
+     */
+    private static class Holder {
+        private final String _name;
+        private final char _type;
+        private final String _brand;
+        private final boolean _manual;
+
+        private Holder(Rent rent) { // reads the car through the copy-free accessors of Rent
+            _name = rent.getName();
+            _type = rent.getCarType();
+            _brand = rent.getCarBrand();
+            _manual = rent.isCarManual();
+        }
+
+        public boolean equals(Object other) {
+            if (!(other instanceof Holder))
+                return false;
+            Holder holder = (Holder) other;
+            return _name.equals(holder._name) && _type == holder._type && Objects.equals(_brand, holder._brand) && _manual == holder._manual;
+        }
+
+        public int hashCode() {
+            return ((_name.hashCode() * 31 + _type) * 31 + Objects.hashCode(_brand)) * 2 + (_manual ? 1 : 0);
+        }
+    }
+
+    /**
+     * Adds many rents at once. The rents are read in large batches, every batch is sorted once and then spliced
+     * into the list in a single pass, like merge. The result is the same as calling addRent for every rent in
+     * the order given: rents already present (or repeated in the input) are skipped. While conflicts are refused
+     * (see setRejectConflicts) the rents are added one at a time in the order given, like addRent, so of two
+     * conflicting rents the one that comes first in the input is kept.
+     *
+     * @param rents the rents to add, they are copied
+     * @return the number of rents that were added
+     */
+    public int addAll(Iterator<Rent> rents) {
+        int before = _numOfRents;
+        ArrayList<RentNode> batch = new ArrayList<RentNode>();
+        while (rents.hasNext()) {
+            Rent r = rents.next();
+            if (r == null || r.getName() == null)
+                continue; // addRent rejects those as well
+            RentNode node = new RentNode(new Rent(r));
+            node.setSeq(batch.size()); // keeps equal rents in input order through the sort
+            batch.add(node);
+            if (batch.size() == BULK_BATCH)
+                addBatch(batch);
+        }
+        if (!batch.isEmpty())
+            addBatch(batch); // the last, partial batch
+        return _numOfRents - before;
+    }
+
+    private void addBatch(ArrayList<RentNode> batch) { // sorts the batch, splices it into the list and empties it
+        if (_rejectConflicts) {
+            for (RentNode node : batch) { // conflicts are decided in input order, as addRent decides them
+                if (_byContent.containsKey(node.peekRent()) || isConflict(node))
+                    continue;
+                node.setSeq(++_lastSeq);
+                link(_order.lower(node), node);
+            }
+        } else {
+            Collections.sort(batch, RentNode.CHRONOLOGICAL);
+            for (int i = 0; i < batch.size() - 1; i++)
+                batch.get(i).setNext(batch.get(i + 1));
+            splice(batch.get(0), false);
+        }
+        batch.clear();
+    }
+
+    /**
+     * Adds many rents at once, see addAll(Iterator).
+     *
+     * @param rents the rents to add, they are copied
+     * @return the number of rents that were added
+     */
+    public int addAll(Stream<Rent> rents) {
+        return addAll(rents.iterator());
+    }
+
+    /**
+     * Adds the rents of a comma separated file, see addAll(Iterator).
+     * Every non-empty line holds one rent: name,car id,car type,brand,gear (manual or auto),pick date,return date
+     * with the dates written as dd/MM/yyyy (for example: David Cohen,1122233,B,Mercedes,auto,12/03/2004,06/07/2004).
+     *
+     * @param file the file to read, in UTF-8
+     * @return the number of rents that were added
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if a line is not in the format above (a gear other than manual or auto,
+     *                                  or a date that does not exist), the message gives its line number
+     */
+    public int addAll(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            final Iterator<String> lines = in.lines().iterator();
+            return addAll(new Iterator<Rent>() {
+                private String _line; // the next non-empty line, null if it was not read yet
+                private int _lineNumber; // the line number of _line, counting from 1
+
+                public boolean hasNext() {
+                    while (_line == null && lines.hasNext()) {
+                        String line = lines.next();
+                        _lineNumber++;
+                        if (!line.trim().isEmpty())
+                            _line = line;
+                    }
+                    return _line != null;
+                }
+
+                public Rent next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    String line = _line;
+                    _line = null;
+                    return parseRent(line, _lineNumber);
+                }
+            });
+        }
+    }
+
+    void addSorted(RentNode sorted) { // adds a chain of new nodes that is already in chronological order, used by CompanySnapshot
+        splice(sorted, false);
+    }
+
+    private static Rent parseRent(String line, int lineNumber) { // one line of the file format of addAll(Path)
+        String[] fields = line.split(",");
+        if (fields.length != 7)
+            throw new IllegalArgumentException("Line " + lineNumber + ": expected 7 fields in rent line: " + line);
+        try {
+            String gear = fields[4].trim();
+            if (!gear.equals("manual") && !gear.equals("auto"))
+                throw new IllegalArgumentException("gear must be manual or auto: " + gear);
+            Car car = new Car(Integer.parseInt(fields[1].trim()), fields[2].trim().charAt(0), fields[3].trim(), gear.equals("manual"));
+            return new Rent(fields[0].trim(), car, parseDate(fields[5]), parseDate(fields[6]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": bad rent line: " + line, e);
+        }
+    }
+
+    private static Date parseDate(String text) { // dd/MM/yyyy, the format of Date.toString
+        String[] parts = text.trim().split("/");
+        if (parts.length != 3)
+            throw new IllegalArgumentException("date must be dd/MM/yyyy: " + text.trim());
+        int day = Integer.parseInt(parts[0]);
+        int month = Integer.parseInt(parts[1]);
+        int year = Integer.parseInt(parts[2]);
+        Date date = new Date(day, month, year);
+        if (date.getDay() != day || date.getMonth() != month || date.getYear() != year) // Date silently replaces invalid dates
+            throw new IllegalArgumentException("not a valid date: " + text.trim());
+        return date;
+    }
+
+    private void splice(RentNode sorted, boolean copy) { // adds a chain of nodes in chronological order in one pass over the list
+        if (sorted == null)
+            return;
+        RentNode behind = _order.lower(sorted); // last node of this list that comes before the next node to add
+        RentNode curr = behind == null ? _head : behind.getNext();
+        RentNode next;
+        for (RentNode node = sorted; node != null; node = next) {
+            next = node.getNext(); // read before link changes it
+            while (curr != null && !shouldComeBefore(node, curr)) { // equal rents go after the ones already here
+                behind = curr;
+                curr = curr.getNext();
+            }
+            if (_byContent.containsKey(node.peekRent()) || isConflict(node))
+                continue;
+            RentNode newNodeRent = copy ? new RentNode(new Rent(node.peekRent())) : node;
+            newNodeRent.setSeq(++_lastSeq);
+            link(behind, newNodeRent);
+            behind = newNodeRent;
+        }
+    }
+
+    private static boolean shouldComeBefore(RentNode first, RentNode second) { // Method to check if first rent should come before second rent
+        if (first.getPickDay() != second.getPickDay())
+            return first.getPickDay() < second.getPickDay(); // the earlier pick date comes first
+        return first.getDays() > second.getDays(); // same pick date, the longer rent comes first
     }
 
     /**
@@ -300,14 +1080,65 @@ public class Company {
      * @return a string representation of the company and its rents.
      */
     public String toString() {
-        if (_head == null) //no rents
-            return "The company has " + getNumOfRents() + " rents.";
-        String s = "The company has " + getNumOfRents() + " rents:\n";
-        RentNode curr = _head;
-        while (curr != null) {
-            s += curr.getRent().toString() + "\n";
-            curr = curr.getNext();
+        StringBuilder s = new StringBuilder(32 + _numOfRents * 80); // a printed rent is about 80 characters
+        try {
+            appendTo(s);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringBuilder never throws
         }
-        return s;
+        return s.toString();
+    }
+
+    /**
+     * Writes the company to the given output in the format of toString, one rent at a time,
+     * so the whole text is never held in memory.
+     * <p>
+     * Time complexity: O(n)
+     *
+     * @param out the output to write to
+     * @throws IOException if the output cannot be written
+     */
+    public void appendTo(Appendable out) throws IOException {
+        out.append("The company has ").append(Integer.toString(_numOfRents));
+        if (_head == null) { //no rents
+            out.append(" rents.");
+            return;
+        }
+        out.append(" rents:\n");
+        for (RentNode curr = _head; curr != null; curr = curr.getNext()) {
+            curr.peekRent().appendTo(out);
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Writes the company to the given writer in the format of toString and flushes it.
+     * The text is collected in a reused character buffer and written in large blocks.
+     *
+     * @param out the writer to write to
+     * @throws IOException if the writer cannot be written
+     */
+    public void writeTo(Writer out) throws IOException {
+        StringBuilder block = new StringBuilder(WRITE_BLOCK + 256);
+        char[] chars = new char[block.capacity()];
+        block.append("The company has ").append(_numOfRents).append(_head == null ? " rents." : " rents:\n"); //no rents
+        for (RentNode curr = _head; curr != null; curr = curr.getNext()) {
+            curr.peekRent().appendTo(block);
+            block.append('\n');
+            if (block.length() >= WRITE_BLOCK) {
+                chars = writeBlock(out, block, chars);
+            }
+        }
+        writeBlock(out, block, chars);
+        out.flush();
+    }
+
+    private static char[] writeBlock(Writer out, StringBuilder block, char[] chars) throws IOException { // moves the block to the writer and empties it
+        if (chars.length < block.length())
+            chars = new char[block.length()];
+        block.getChars(0, block.length(), chars, 0);
+        out.write(chars, 0, block.length());
+        block.setLength(0);
+        return chars;
     }
 }
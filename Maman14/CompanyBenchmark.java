@@ -0,0 +1,529 @@
+package Maman14;
+
+import Maman12.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Micro benchmarks for the hot paths of Company, Rent and Date.
+ * Every benchmark is warmed up before it is measured, setup work is kept out of the timed part
+ * and results are written to a sink so the JIT cannot drop the measured code.
+ * <p>
+ * Usage: java Maman14.CompanyBenchmark [size ...] (default sizes: 1000 10000 100000 1000000)
+ *
+ * @author Osher Akshikar
+ * @version 2023a
+ */
+public class CompanyBenchmark {
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int CALLS_PER_ROUND = 1000000; // repetitions of the cheap single-call benchmarks
+    private static final String[] NAMES = {"David Cohen", "Israel Israeli", "Noy Zohar", "Sarah Levi", "Dana Katz"};
+    private static final String[] BRANDS = {"Mazda", "Toyota", "Honda", "BMW", "Mercedes"};
+
+    private static long _sink; // consumes benchmark results
+
+    /**
+     * One benchmark: setUp() prepares the state and is not timed, run() is timed and returns the number of operations it did.
+     */
+    private static abstract class Bench {
+        void setUp() {
+        }
+
+        abstract long run();
+    }
+
+    private static void measure(String name, int size, Bench bench) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            bench.setUp();
+            bench.run();
+        }
+        double best = Double.MAX_VALUE;
+        double total = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            bench.setUp();
+            long start = System.nanoTime();
+            long ops = bench.run();
+            double perOp = (double) (System.nanoTime() - start) / Math.max(ops, 1);
+            best = Math.min(best, perOp);
+            total += perOp;
+        }
+        System.out.printf("%-34s %9d %14.1f %14.1f%n", name, size, total / MEASURED_ROUNDS, best);
+    }
+
+    private static Rent[] randomRents(int n, long seed) { // distinct rents spread over twenty years
+        Random rnd = new Random(seed);
+        Rent[] rents = new Rent[n];
+        for (int i = 0; i < n; i++) {
+            Car car = new Car(1000000 + rnd.nextInt(9000000), (char) ('A' + rnd.nextInt(4)), BRANDS[rnd.nextInt(BRANDS.length)], rnd.nextBoolean());
+            Date pick = Date.ofEpochDay(new Date(1, 1, 2000).toEpochDay() + rnd.nextInt(7300));
+            Date ret = Date.ofEpochDay(pick.toEpochDay() + 1 + rnd.nextInt(30));
+            rents[i] = new Rent(NAMES[rnd.nextInt(NAMES.length)] + " " + i, car, pick, ret);
+        }
+        return rents;
+    }
+
+    private static Rent[] sorted(Rent[] rents, final boolean reverse) { // in the company's chronological order, or reversed
+        Rent[] copy = Arrays.copyOf(rents, rents.length);
+        Arrays.sort(copy, new Comparator<Rent>() {
+            public int compare(Rent first, Rent second) {
+                int order = first.getPickDate().compareTo(second.getPickDate());
+                if (order == 0)
+                    order = Integer.compare(second.howManyDays(), first.howManyDays());
+                return reverse ? -order : order;
+            }
+        });
+        return copy;
+    }
+
+    private static Company companyOf(Rent[] rents) {
+        Company company = new Company();
+        for (Rent r : rents)
+            company.addRent(r.getName(), r.getCar(), r.getPickDate(), r.getReturnDate());
+        return company;
+    }
+
+    private static void addRentBenchmarks(final int size) {
+        Rent[] random = randomRents(size, size);
+        String[] orders = {"sorted", "reverse", "random"};
+        Rent[][] inputs = {sorted(random, false), sorted(random, true), random};
+        for (int k = 0; k < orders.length; k++) {
+            final Rent[] input = inputs[k];
+            measure("Company.addRent (" + orders[k] + ")", size, new Bench() {
+                long run() {
+                    Company company = companyOf(input);
+                    _sink += company.getNumOfRents();
+                    return input.length;
+                }
+            });
+            measure("Company.addAll (" + orders[k] + ")", size, new Bench() {
+                long run() {
+                    Company company = new Company();
+                    _sink += company.addAll(Arrays.asList(input).iterator());
+                    return input.length;
+                }
+            });
+        }
+    }
+
+    private static void companyBenchmarks(final int size) {
+        final Rent[] rents = randomRents(size, size);
+        final Rent[] others = randomRents(size, size + 1);
+        final Company company = companyOf(rents);
+        final Company other = companyOf(others);
+
+        measure("Company.removeRent", size, new Bench() {
+            Company _target;
+
+            void setUp() {
+                _target = companyOf(rents);
+            }
+
+            long run() {
+                for (Rent r : rents)
+                    _sink += _target.removeRent(r.getReturnDate()) ? 1 : 0;
+                return rents.length;
+            }
+        });
+        measure("Company.merge", size, new Bench() {
+            Company _target;
+
+            void setUp() {
+                _target = companyOf(rents);
+            }
+
+            long run() {
+                _target.merge(other);
+                _sink += _target.getNumOfRents();
+                return others.length;
+            }
+        });
+        final int scans = Math.max(1, CALLS_PER_ROUND / size); // full scans per round, so small sizes are not dominated by timer noise
+        final Company half = companyOf(Arrays.copyOf(rents, size / 2));
+        measure("Company.includes", size, new Bench() {
+            long run() {
+                for (int i = 0; i < scans; i++)
+                    _sink += company.includes(half) ? 1 : 0;
+                return scans;
+            }
+        });
+        measure("Company.getNumOfRents", size, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i++)
+                    _sink += company.getNumOfRents();
+                return CALLS_PER_ROUND;
+            }
+        });
+        measure("Company.getSumOfPrices", size, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i++)
+                    _sink += company.getSumOfPrices();
+                return CALLS_PER_ROUND;
+            }
+        });
+        measure("Company.getSumOfDays", size, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i++)
+                    _sink += company.getSumOfDays();
+                return CALLS_PER_ROUND;
+            }
+        });
+        measure("Company.averageRent", size, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i++)
+                    _sink += (long) company.averageRent();
+                return CALLS_PER_ROUND;
+            }
+        });
+        measure("Company.lastCarRent", size, new Bench() {
+            long run() {
+                for (int i = 0; i < scans; i++)
+                    _sink += company.lastCarRent().getId();
+                return scans;
+            }
+        });
+        measure("Company.longestRent", size, new Bench() {
+            long run() {
+                for (int i = 0; i < scans; i++)
+                    _sink += company.longestRent().howManyDays();
+                return scans;
+            }
+        });
+        measure("Company.mostCommonRate", size, new Bench() {
+            long run() {
+                for (int i = 0; i < scans; i++)
+                    _sink += company.mostCommonRate();
+                return scans;
+            }
+        });
+        final Date[] days = new Date[1024];
+        for (int i = 0; i < days.length; i++)
+            days[i] = rents[(int) ((long) i * size / days.length)].getPickDate();
+        measure("Company.holdersOf", size, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i++)
+                    _sink += company.holdersOf(rents[i % size].getCar().getId(), days[i & 1023]).size();
+                return CALLS_PER_ROUND;
+            }
+        });
+        measure("Company.rentalsPickedBetween", size, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i++) {
+                    Iterator<Rent> picked = company.rentalsPickedBetween(days[i & 1023], days[i & 1023]);
+                    _sink += picked.hasNext() ? picked.next().howManyDays() : 0;
+                }
+                return CALLS_PER_ROUND;
+            }
+        });
+        measure("Company.rentalsActiveOn", size, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i++) {
+                    Iterator<Rent> active = company.rentalsActiveOn(days[i & 1023]);
+                    _sink += active.hasNext() ? active.next().howManyDays() : 0;
+                }
+                return CALLS_PER_ROUND;
+            }
+        });
+        measure("Company.isCarFree", size, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i++)
+                    _sink += company.isCarFree(rents[i % size].getCar().getId(), days[i & 1023], days[(i + 1) & 1023]) ? 1 : 0;
+                return CALLS_PER_ROUND;
+            }
+        });
+        measure("Company.overlappingRents", size, new Bench() {
+            long run() {
+                _sink += company.overlappingRents().size();
+                return size;
+            }
+        });
+        measure("Company.toString (per rent)", size, new Bench() {
+            long run() {
+                _sink += company.toString().length();
+                return size;
+            }
+        });
+        measure("Company.writeTo (per rent)", size, new Bench() {
+            long run() {
+                try {
+                    company.writeTo(new OutputStreamWriter(new CountingStream(), StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return size;
+            }
+        });
+        measure("Company.getSumOfPrices(PriceTable)", size, new Bench() {
+            long run() {
+                for (int i = 0; i < scans; i++)
+                    _sink += company.getSumOfPrices(PriceTable.STANDARD);
+                return scans;
+            }
+        });
+        measure("Company.longestRents(100)", size, new Bench() {
+            long run() {
+                for (int i = 0; i < 1000; i++)
+                    _sink += company.longestRents(100).size();
+                return 1000;
+            }
+        });
+        measure("Company.medianRentLength", size, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i++)
+                    _sink += (long) company.medianRentLength();
+                return CALLS_PER_ROUND;
+            }
+        });
+        measure("Company.mostRentedBrands(3)", size, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i++)
+                    _sink += company.mostRentedBrands(3).size();
+                return CALLS_PER_ROUND;
+            }
+        });
+        final RentTable table = new RentTable(company);
+        measure("RentTable.longestRent", size, new Bench() {
+            long run() {
+                for (int i = 0; i < scans; i++)
+                    _sink += table.longestRent().howManyDays();
+                return scans;
+            }
+        });
+        measure("RentTable.getSumOfPrices", size, new Bench() {
+            long run() {
+                for (int i = 0; i < scans; i++)
+                    _sink += table.getSumOfPrices();
+                return scans;
+            }
+        });
+    }
+
+    private static void snapshotBenchmarks(final int size) throws IOException {
+        final Company company = companyOf(randomRents(size, size));
+        final Path file = Files.createTempFile("company", ".snapshot");
+        measure("CompanySnapshot.save", size, new Bench() {
+            long run() {
+                try {
+                    CompanySnapshot.save(company, file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return size;
+            }
+        });
+        measure("CompanySnapshot.load", size, new Bench() {
+            long run() {
+                try {
+                    _sink += CompanySnapshot.load(file).getNumOfRents();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return size;
+            }
+        });
+        Files.delete(file);
+
+        final Rent[] rents = randomRents(size, size + 2);
+        measure("CompanyLog.addRent", size, new Bench() {
+            long run() {
+                try {
+                    Path dir = Files.createTempDirectory("company-log");
+                    CompanyLog log = new CompanyLog(dir, 10, Long.MAX_VALUE);
+                    for (Rent r : rents)
+                        log.addRent(r.getName(), r.getCar(), r.getPickDate(), r.getReturnDate());
+                    log.sync();
+                    log.close();
+                    Files.delete(dir.resolve("wal-0.log"));
+                    Files.delete(dir);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return rents.length;
+            }
+        });
+    }
+
+    /**
+     * An output stream that only counts the bytes written to it, into the sink.
+     */
+    private static class CountingStream extends OutputStream {
+        public void write(int b) {
+            _sink++;
+        }
+
+        public void write(byte[] b, int off, int len) {
+            _sink += len;
+        }
+    }
+
+    private static void rentAndDateBenchmarks() {
+        final Rent[] rents = randomRents(1024, 7);
+        final Date[] dates = new Date[rents.length];
+        for (int i = 0; i < rents.length; i++)
+            dates[i] = rents[i].getPickDate();
+        final int mask = rents.length - 1;
+
+        measure("Rent.getPrice", rents.length, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i++)
+                    _sink += rents[i & mask].getPrice();
+                return CALLS_PER_ROUND;
+            }
+        });
+        measure("Rent.overlap", rents.length, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i++)
+                    _sink += rents[i & mask].overlap(rents[(i + 1) & mask]) == null ? 0 : 1;
+                return CALLS_PER_ROUND;
+            }
+        });
+        final char[] types = new char[rents.length];
+        final int[] lengths = new int[rents.length];
+        final int[] prices = new int[rents.length];
+        for (int i = 0; i < rents.length; i++) {
+            types[i] = rents[i].getCarType();
+            lengths[i] = rents[i].howManyDays();
+        }
+        measure("Rent.getPrice(type, days)", rents.length, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i++)
+                    _sink += Rent.getPrice(types[i & mask], lengths[i & mask]);
+                return CALLS_PER_ROUND;
+            }
+        });
+        measure("PriceTable.priceAll", rents.length, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i += types.length)
+                    _sink += PriceTable.STANDARD.priceAll(types, lengths, prices);
+                return CALLS_PER_ROUND;
+            }
+        });
+        measure("Date.before", dates.length, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i++)
+                    _sink += dates[i & mask].before(dates[(i + 1) & mask]) ? 1 : 0;
+                return CALLS_PER_ROUND;
+            }
+        });
+        measure("Date.toString", dates.length, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i++)
+                    _sink += dates[i & mask].toString().length();
+                return CALLS_PER_ROUND;
+            }
+        });
+        measure("Date.difference", dates.length, new Bench() {
+            long run() {
+                for (int i = 0; i < CALLS_PER_ROUND; i++)
+                    _sink += dates[i & mask].difference(dates[(i + 1) & mask]);
+                return CALLS_PER_ROUND;
+            }
+        });
+    }
+
+    private static void concurrentBenchmarks(final int size) {
+        final Rent[] rents = randomRents(size, size);
+        for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+            final int count = threads;
+            measure("ConcurrentCompany add+remove (" + threads + "t)", size, new Bench() {
+                ConcurrentCompany _target;
+
+                void setUp() {
+                    _target = new ConcurrentCompany();
+                }
+
+                long run() {
+                    runThreads(count, new Worker() {
+                        void work(int from, int to) {
+                            for (int i = from; i < to; i++)
+                                _target.addRent(rents[i].getName(), rents[i].getCar(), rents[i].getPickDate(), rents[i].getReturnDate());
+                            for (int i = from; i < to; i++)
+                                _target.removeRent(rents[i].getReturnDate());
+                        }
+                    }, rents.length);
+                    return 2L * rents.length;
+                }
+            });
+            measure("Company behind one lock (" + threads + "t)", size, new Bench() {
+                Company _target;
+
+                void setUp() {
+                    _target = new Company();
+                }
+
+                long run() {
+                    runThreads(count, new Worker() {
+                        void work(int from, int to) {
+                            for (int i = from; i < to; i++) {
+                                synchronized (_target) {
+                                    _target.addRent(rents[i].getName(), rents[i].getCar(), rents[i].getPickDate(), rents[i].getReturnDate());
+                                }
+                            }
+                            for (int i = from; i < to; i++) {
+                                synchronized (_target) {
+                                    _target.removeRent(rents[i].getReturnDate());
+                                }
+                            }
+                        }
+                    }, rents.length);
+                    return 2L * rents.length;
+                }
+            });
+        }
+    }
+
+    /**
+     * A slice of work for one thread: the indexes from (inclusive) to (exclusive) of the input.
+     */
+    private static abstract class Worker {
+        abstract void work(int from, int to);
+    }
+
+    private static void runThreads(int threads, final Worker worker, int n) { // splits [0, n) between the threads and waits for them
+        Thread[] pool = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int from = (int) ((long) n * t / threads);
+            final int to = (int) ((long) n * (t + 1) / threads);
+            pool[t] = new Thread(new Runnable() {
+                public void run() {
+                    worker.work(from, to);
+                }
+            });
+            pool[t].start();
+        }
+        try {
+            for (Thread thread : pool)
+                thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = {1000, 10000, 100000, 1000000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+                sizes[i] = Integer.parseInt(args[i]);
+        }
+        System.out.printf("%-34s %9s %14s %14s%n", "Benchmark", "Size", "Avg ns/op", "Best ns/op");
+        rentAndDateBenchmarks();
+        for (int size : sizes) {
+            addRentBenchmarks(size);
+            companyBenchmarks(size);
+            snapshotBenchmarks(size);
+            concurrentBenchmarks(size);
+        }
+        System.out.println("(sink " + _sink + ")");
+    }
+}
@@ -0,0 +1,399 @@
+package Maman14;
+
+import Maman12.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A Company kept in memory whose changes are recorded in an append-only write-ahead log, so it can be
+ * rebuilt after the process stops or crashes.
+ * <p>
+ * All the files live in one directory: snapshots (written by CompanySnapshot) named snapshot-G.bin and logs
+ * named wal-G.log, where G is a generation number. Snapshot G holds the state of the company when log G was
+ * started, so the company is rebuilt by loading the newest snapshot and replaying every log of that
+ * generation or later, in order.
+ * <p>
+ * Every successful addRent or removeRent is appended to an in-memory buffer as one binary record
+ * (length, CRC32 checksum and the operation). A background thread writes the buffer to the log and forces it
+ * to the disk once every sync interval, so many changes share one fsync (group commit). A change is durable
+ * once the next sync has finished, sync() can be called to wait for that. A record that was cut by a crash
+ * fails its checksum and the log is cut back to the last whole record when it is replayed.
+ * <p>
+ * When the log grows past the compaction size, the background thread starts a new generation: it opens an
+ * empty log, saves a snapshot of the company and then deletes the files of the older generation.
+ * Changes wait while the snapshot is written.
+ *
+ * @author Osher Akshikar
+ * @version 2023a
+ */
+public class CompanyLog implements AutoCloseable {
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final int MANUAL_FLAG = 1;
+    private static final int BUFFER_SIZE = 1 << 20; // records collected before they are written without waiting for the sync
+
+    private final Path _dir;
+    private final Company _company;
+    private final long _compactBytes;
+    private final ScheduledExecutorService _background;
+    private final CRC32 _crc;
+    private ByteBuffer _pending; // records not yet written to the log
+    private FileChannel _log;
+    private long _generation;
+    private long _logBytes; // size of the current log, including the pending records
+    private boolean _dirty; // records were written since the last fsync
+    private Exception _failure; // the first error of the background thread, reported by the next call
+
+    /**
+     * Opens the log in the given directory, rebuilding the company from the files already there.
+     * An empty or new directory starts an empty company.
+     *
+     * @param dir          the directory of the snapshot and log files, created if it does not exist
+     * @param syncMillis   the time between two fsyncs of the log, in milliseconds
+     * @param compactBytes the log size, in bytes, from which the background thread writes a new snapshot
+     * @throws IOException if the files cannot be read or written
+     */
+    public CompanyLog(Path dir, long syncMillis, long compactBytes) throws IOException {
+        _dir = Files.createDirectories(dir);
+        _compactBytes = compactBytes;
+        _crc = new CRC32();
+        _pending = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        long snapshot = -1; // newest generation with a snapshot
+        long newest = 0; // newest generation with any file
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(_dir)) {
+            for (Path file : files) {
+                long g = generationOf(file, "snapshot-", ".bin");
+                if (g >= 0)
+                    snapshot = Math.max(snapshot, g);
+                newest = Math.max(newest, Math.max(g, generationOf(file, "wal-", ".log")));
+                if (generationOf(file, "snapshot-", ".tmp") >= 0)
+                    Files.delete(file); // a compaction that did not finish
+            }
+        }
+        _company = snapshot < 0 ? new Company() : CompanySnapshot.load(snapshotFile(snapshot));
+        for (long g = Math.max(snapshot, 0); g <= newest; g++)
+            replay(logFile(g), g == newest);
+        _generation = newest;
+        _log = FileChannel.open(logFile(_generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        _logBytes = _log.size();
+        deleteBefore(Math.max(snapshot, 0));
+
+        _background = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "company-log");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        _background.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                backgroundSync();
+            }
+        }, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the company rebuilt from the log. It must only be changed through this log,
+     * changes made directly to it are not recorded.
+     *
+     * @return the company of this log
+     */
+    public Company getCompany() {
+        return _company;
+    }
+
+    /**
+     * Adds a new Rent to the company, like Company.addRent, and records it in the log if it was added.
+     *
+     * @param name  - car name
+     * @param c     - car type
+     * @param start - start date of the rental
+     * @param end   - end date of the rental
+     * @return true if the Rent is successfully added, false if the Rent is already present.
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized boolean addRent(String name, Car c, Date start, Date end) throws IOException {
+        checkFailure();
+        if (name == null || c == null || start == null || end == null)
+            return false;
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] brandBytes = c.getBrand() == null ? null : c.getBrand().getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 4 + 4 + 4 + 1 + 1 + 4 + (brandBytes == null ? 0 : brandBytes.length) + 4 + nameBytes.length;
+        ByteBuffer record = reserve(length); // before the change, so a failed write leaves the company as the log has it
+        boolean added;
+        try {
+            added = _company.addRent(name, c, start, end);
+        } catch (RuntimeException e) {
+            release(); // an empty header left in the buffer would end the log on replay
+            throw e;
+        }
+        if (!added) {
+            release();
+            return false;
+        }
+        record.put(ADD);
+        record.putInt(start.toEpochDay());
+        record.putInt(end.toEpochDay());
+        record.putInt(c.getId());
+        record.put((byte) c.getType());
+        record.put((byte) (c.isManual() ? MANUAL_FLAG : 0));
+        putBytes(record, brandBytes);
+        putBytes(record, nameBytes);
+        seal(record, length);
+        return true;
+    }
+
+    /**
+     * Removes a rent from the company, like Company.removeRent, and records it in the log if one was removed.
+     *
+     * @param d the return date of the Rent object to be removed
+     * @return true if a Rent was removed, false otherwise.
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized boolean removeRent(Date d) throws IOException {
+        checkFailure();
+        ByteBuffer record = reserve(1 + 4);
+        boolean removed;
+        try {
+            removed = _company.removeRent(d);
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+        if (!removed) {
+            release();
+            return false;
+        }
+        record.put(REMOVE);
+        record.putInt(d.toEpochDay());
+        seal(record, 1 + 4);
+        return true;
+    }
+
+    /**
+     * Writes every recorded change to the log and forces it to the disk.
+     * When this method returns, all the changes made before it was called survive a crash.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void sync() throws IOException {
+        checkFailure();
+        writePending();
+        if (_dirty) {
+            _log.force(false);
+            _dirty = false;
+        }
+    }
+
+    /**
+     * Starts a new generation now: the company is saved to a new snapshot and the older files are deleted.
+     *
+     * @throws IOException if the files cannot be written
+     */
+    public synchronized void compact() throws IOException {
+        sync();
+        _log.close();
+        long next = _generation + 1;
+        _log = FileChannel.open(logFile(next), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        _generation = next;
+        _logBytes = 0;
+
+        // the snapshot becomes visible only when it is whole, until then the older files still rebuild the company
+        Path temp = _dir.resolve("snapshot-" + next + ".tmp");
+        CompanySnapshot.save(_company, temp);
+        try (FileChannel written = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            written.force(true);
+        }
+        Files.move(temp, snapshotFile(next), StandardCopyOption.ATOMIC_MOVE);
+        deleteBefore(next);
+    }
+
+    /**
+     * Syncs the log and stops the background thread.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    public void close() throws IOException {
+        _background.shutdown();
+        try {
+            _background.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                sync();
+            } finally {
+                _log.close();
+            }
+        }
+    }
+
+    private synchronized void backgroundSync() { // runs every sync interval on the background thread
+        if (_failure != null)
+            return;
+        try {
+            sync();
+            if (_logBytes >= _compactBytes)
+                compact();
+        } catch (IOException | RuntimeException e) { // a runtime error would otherwise cancel the task silently
+            _failure = e;
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (_failure != null)
+            throw new IOException("Writing the company log failed", _failure);
+    }
+
+    private ByteBuffer reserve(int length) throws IOException { // room for one record in the pending buffer, after its length and checksum
+        if (_pending.remaining() < 8 + length) {
+            writePending();
+            if (_pending.capacity() < 8 + length)
+                _pending = ByteBuffer.allocate(8 + length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        _pending.position(_pending.position() + 8);
+        return _pending;
+    }
+
+    private void release() { // gives back the room of a record that was not needed
+        _pending.position(_pending.position() - 8);
+    }
+
+    private void seal(ByteBuffer record, int length) { // writes the length and checksum in front of the record that was just put
+        int start = record.position() - length;
+        _crc.reset();
+        _crc.update(record.array(), record.arrayOffset() + start, length);
+        record.putInt(start - 8, length);
+        record.putInt(start - 4, (int) _crc.getValue());
+        _logBytes += 8 + length;
+    }
+
+    private void writePending() throws IOException {
+        _pending.flip();
+        while (_pending.hasRemaining())
+            _log.write(_pending);
+        if (_pending.limit() > 0)
+            _dirty = true;
+        _pending.clear();
+    }
+
+    private void replay(Path file, boolean last) throws IOException { // applies the whole records of a log, cutting a torn end off the last one
+        // A crash can only tear the end of the log: a record cut short, a last record whose checksum fails, or a tail
+        // of zeros. A bad record with more data after it means the log is corrupt, and replaying past it is refused.
+        if (!Files.exists(file))
+            return;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer data = ByteBuffer.allocate((int) in.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (data.hasRemaining() && in.read(data) >= 0) {
+            }
+            data.flip();
+            int valid = 0;
+            while (data.remaining() >= 8) {
+                int length = data.getInt();
+                int crc = data.getInt();
+                if (length > data.remaining() || (length <= 0 && isZeros(data, valid)))
+                    break; // torn end
+                if (length <= 0)
+                    throw new IOException("Corrupt company log " + file + ": bad record length at byte " + valid);
+                _crc.reset();
+                _crc.update(data.array(), data.arrayOffset() + data.position(), length);
+                if ((int) _crc.getValue() != crc) {
+                    if (length == data.remaining())
+                        break; // torn end, the last record was not written whole
+                    throw new IOException("Corrupt company log " + file + ": bad checksum at byte " + valid);
+                }
+                apply(data);
+                valid = data.position();
+            }
+            if (last && valid < in.size())
+                in.truncate(valid);
+        }
+    }
+
+    private static boolean isZeros(ByteBuffer data, int from) { // checks that every byte from the given position to the end is 0
+        for (int i = from; i < data.limit(); i++) {
+            if (data.get(i) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    private void apply(ByteBuffer record) { // performs the change of one record on the company
+        byte op = record.get();
+        if (op == REMOVE) {
+            _company.removeRent(Date.ofEpochDay(record.getInt()));
+            return;
+        }
+        Date pick = Date.ofEpochDay(record.getInt());
+        Date ret = Date.ofEpochDay(record.getInt());
+        int id = record.getInt();
+        char type = (char) record.get();
+        boolean manual = (record.get() & MANUAL_FLAG) != 0;
+        String brand = getString(record);
+        String name = getString(record);
+        _company.addRent(name, new Car(id, type, brand, manual), pick, ret);
+    }
+
+    private static void putBytes(ByteBuffer record, byte[] bytes) { // a string as its length (-1 for null) and its bytes
+        if (bytes == null) {
+            record.putInt(-1);
+            return;
+        }
+        record.putInt(bytes.length);
+        record.put(bytes);
+    }
+
+    private static String getString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0)
+            return null;
+        String s = new String(record.array(), record.arrayOffset() + record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return s;
+    }
+
+    private void deleteBefore(long generation) throws IOException { // removes the files no longer needed to rebuild the company
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(_dir)) {
+            for (Path file : files) {
+                long g = Math.max(generationOf(file, "snapshot-", ".bin"), generationOf(file, "wal-", ".log"));
+                if (g >= 0 && g < generation)
+                    Files.delete(file);
+            }
+        }
+    }
+
+    private Path snapshotFile(long generation) {
+        return _dir.resolve("snapshot-" + generation + ".bin");
+    }
+
+    private Path logFile(long generation) {
+        return _dir.resolve("wal-" + generation + ".log");
+    }
+
+    private static long generationOf(Path file, String prefix, String suffix) { // -1 if the file is not of that kind
+        String name = file.getFileName().toString();
+        if (!name.startsWith(prefix) || !name.endsWith(suffix))
+            return -1;
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
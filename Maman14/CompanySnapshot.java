@@ -0,0 +1,198 @@
+package Maman14;
+
+import Maman12.*;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * This class saves a Company to a compact binary file and loads it back.
+ * <p>
+ * The file starts with a header, followed by one fixed-width record for every rent (in the company's
+ * chronological order) and a table of the strings (renter names and car brands) the records point to:
+ * <pre>
+ * header:  magic "RENT", major and minor format version (2 bytes each), header size, record size, number of records,
+ *          number of strings, offset of the string table (a long)
+ * record:  pick epoch day, return epoch day, car id, car type, flags (bit 0: manual gear), brand string, name string
+ * strings: length in bytes (-1 for a null string) and the UTF-8 bytes of every string
+ * </pre>
+ * All numbers are little-endian. The header and record sizes are stored in the file, so a later minor version
+ * may add fields at their end: this version reads the fields it knows and skips the rest. A change that older
+ * readers cannot skip gets a new major version, and a file whose major version is newer than FORMAT_VERSION
+ * is rejected.
+ * <p>
+ * Files are written through a FileChannel and read through a memory mapping of the file. The records are
+ * stored in list order, so loading links every node at the end of the list without searching for its place.
+ *
+ * @author Osher Akshikar
+ * @version 2023a
+ */
+public class CompanySnapshot {
+    /**
+     * The major format version written by this class, readers accept this major version and older ones
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * The minor format version written by this class, readers accept any minor version
+     */
+    public static final int FORMAT_MINOR = 0;
+
+    private static final int MAGIC = 0x544E4552; // "RENT" in little-endian bytes
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 22;
+    private static final int MANUAL_FLAG = 1;
+    private static final int BUFFER_SIZE = 1 << 20; // bytes collected before every write to the channel
+
+    private CompanySnapshot() {
+    }
+
+    /**
+     * Writes all the rents of the company to the given file, replacing its content.
+     * <p>
+     * Time complexity: O(n)
+     *
+     * @param company the company to save
+     * @param file    the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(Company company, Path file) throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            HashMap<String, Integer> ids = new HashMap<String, Integer>();
+            ArrayList<String> strings = new ArrayList<String>();
+            int records = 0;
+
+            out.position(HEADER_SIZE); // the header is written last, when the counts are known
+            for (RentNode curr = company.getHead(); curr != null; curr = curr.getNext()) {
+                Rent rent = curr.peekRent();
+                if (buffer.remaining() < RECORD_SIZE)
+                    flush(out, buffer);
+                buffer.putInt(curr.getPickDay());
+                buffer.putInt(curr.getReturnDay());
+                buffer.putInt(rent.getCarId());
+                buffer.put((byte) rent.getCarType());
+                buffer.put((byte) (rent.isCarManual() ? MANUAL_FLAG : 0));
+                buffer.putInt(stringId(rent.getCarBrand(), ids, strings));
+                buffer.putInt(stringId(rent.getName(), ids, strings));
+                records++;
+            }
+            long stringTable = HEADER_SIZE + (long) records * RECORD_SIZE;
+            for (String s : strings) {
+                if (s == null) { // a car without a brand, stored as length -1 like CompanyLog does
+                    if (buffer.remaining() < 4)
+                        flush(out, buffer);
+                    buffer.putInt(-1);
+                    continue;
+                }
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                if (buffer.remaining() < 4 + bytes.length)
+                    flush(out, buffer);
+                if (buffer.capacity() < 4 + bytes.length) // longer than the whole buffer
+                    buffer = ByteBuffer.allocate(4 + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(bytes.length);
+                buffer.put(bytes);
+            }
+            flush(out, buffer);
+
+            buffer.putInt(MAGIC);
+            buffer.putShort((short) FORMAT_VERSION);
+            buffer.putShort((short) FORMAT_MINOR);
+            buffer.putInt(HEADER_SIZE);
+            buffer.putInt(RECORD_SIZE);
+            buffer.putInt(records);
+            buffer.putInt(strings.size());
+            buffer.putLong(stringTable);
+            buffer.flip();
+            for (long at = 0; buffer.hasRemaining(); )
+                at += out.write(buffer, at);
+        }
+    }
+
+    /**
+     * Reads a company from a file written by save.
+     * <p>
+     * Time complexity: O(n) to read the file, plus the cost of the company's indexes for every rent
+     *
+     * @param file the file to read
+     * @return a new company with the rents of the file, in the same order
+     * @throws IOException if the file cannot be read or is not a snapshot this version can read
+     */
+    public static Company load(Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (in.size() > Integer.MAX_VALUE)
+                throw new IOException("Snapshot too large to map: " + file);
+            MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (map.limit() < HEADER_SIZE || map.getInt(0) != MAGIC)
+                throw new IOException("Not a company snapshot: " + file);
+            int version = map.getShort(4) & 0xFFFF; // the major version, the minor one (at 6) only adds fields
+            if (version > FORMAT_VERSION)
+                throw new IOException("Snapshot format version " + version + " is newer than " + FORMAT_VERSION);
+            int headerSize = map.getInt(8);
+            int recordSize = map.getInt(12);
+            int records = map.getInt(16);
+            int stringCount = map.getInt(20);
+            long stringTable = map.getLong(24);
+            if (recordSize < RECORD_SIZE || headerSize < HEADER_SIZE || stringTable != headerSize + (long) records * recordSize || stringTable > map.limit())
+                throw new IOException("Corrupt snapshot header: " + file);
+
+            String[] strings = new String[stringCount];
+            map.position((int) stringTable);
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < stringCount; i++) {
+                int length = map.getInt();
+                if (length < 0)
+                    continue; // a null string
+                if (length > bytes.length)
+                    bytes = new byte[length];
+                map.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+
+            RentNode first = null;
+            RentNode last = null;
+            for (int i = 0, at = headerSize; i < records; i++, at += recordSize) {
+                Car car = new Car(map.getInt(at + 8), (char) map.get(at + 12), strings[map.getInt(at + 14)], (map.get(at + 13) & MANUAL_FLAG) != 0);
+                Rent rent = new Rent(strings[map.getInt(at + 18)], car, Date.ofEpochDay(map.getInt(at)), Date.ofEpochDay(map.getInt(at + 4)));
+                RentNode node = new RentNode(rent);
+                if (last == null)
+                    first = node;
+                else
+                    last.setNext(node);
+                last = node;
+            }
+            Company company = new Company();
+            company.addSorted(first);
+            return company;
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("Truncated snapshot: " + file, e);
+        }
+    }
+
+    private static int stringId(String s, HashMap<String, Integer> ids, ArrayList<String> strings) { // index of s (which may be null) in the string table, added if new
+        Integer id = ids.get(s);
+        if (id == null) {
+            id = strings.size();
+            ids.put(s, id);
+            strings.add(s);
+        }
+        return id;
+    }
+
+    private static void flush(FileChannel out, ByteBuffer buffer) throws IOException { // writes the buffer and empties it
+        buffer.flip();
+        while (buffer.hasRemaining())
+            out.write(buffer);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,316 @@
+package Maman14;
+
+import Maman12.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The ConcurrentCompany class is a car rental company with the same methods as Company that can be used by many
+ * threads at once. The rents are kept in a concurrent skip list in the same chronological order as Company's list,
+ * with concurrent hash indexes by content (for duplicates) and by return date (for removals),
+ * so inserts and removals from different threads do not wait for each other.
+ * <p>
+ * Two more skip lists keep the rents ordered by length and by return date, so lastCarRent and longestRent read
+ * their first rent in O(log n) without taking any lock.
+ * <p>
+ * Changes take the shared side of a read-write lock and methods that read several values take the exclusive side,
+ * so every statistic is computed from a consistent state of the company. Only averageRent and mostCommonRate (O(1))
+ * and includes, merge and toString (O(n), they copy every rent) take the exclusive side and stop the changes while
+ * they run. Every change updates the shared reader count of the lock, so writers on many cores still contend on
+ * that one counter.
+ *
+ * @author Osher Akshikar
+ * @version 2023a
+ */
+public class ConcurrentCompany {
+    private static final Comparator<RentNode> LONGEST_FIRST = new Comparator<RentNode>() {
+        public int compare(RentNode first, RentNode second) {
+            if (first.getDays() != second.getDays())
+                return first.getDays() > second.getDays() ? -1 : 1;
+            return RentNode.CHRONOLOGICAL.compare(first, second);
+        }
+    };
+
+    private static final Comparator<RentNode> LATEST_RETURN_FIRST = new Comparator<RentNode>() {
+        public int compare(RentNode first, RentNode second) {
+            if (first.getReturnDay() != second.getReturnDay())
+                return first.getReturnDay() > second.getReturnDay() ? -1 : 1;
+            return RentNode.CHRONOLOGICAL.compare(first, second);
+        }
+    };
+
+    private final ConcurrentSkipListSet<RentNode> _order; // every rent, in Company's list order
+    private final ConcurrentHashMap<Rent, RentNode> _byContent; // the stored rent of every node -> its node
+    private final ConcurrentHashMap<Integer, ConcurrentSkipListSet<RentNode>> _byReturnDay; // return epoch day -> nodes
+    private final ConcurrentSkipListSet<RentNode> _byLength; // every rent, longest first, then in list order
+    private final ConcurrentSkipListSet<RentNode> _byReturn; // every rent, latest return first, then in list order
+    private final AtomicLong _lastSeq;
+    private final AtomicInteger _numOfRents;
+    private final AtomicInteger _sumOfDays;
+    private final AtomicInteger _sumOfPrices;
+    private final AtomicInteger[] _typeCounts; // number of rents of every car type, 'A' to 'D'
+    private final ReentrantReadWriteLock _snapshotLock; // shared by changes, exclusive for consistent reads
+
+    /**
+     * Constructor for an empty company
+     */
+    public ConcurrentCompany() {
+        _order = new ConcurrentSkipListSet<RentNode>(RentNode.CHRONOLOGICAL);
+        _byContent = new ConcurrentHashMap<Rent, RentNode>();
+        _byReturnDay = new ConcurrentHashMap<Integer, ConcurrentSkipListSet<RentNode>>();
+        _byLength = new ConcurrentSkipListSet<RentNode>(LONGEST_FIRST);
+        _byReturn = new ConcurrentSkipListSet<RentNode>(LATEST_RETURN_FIRST);
+        _lastSeq = new AtomicLong();
+        _numOfRents = new AtomicInteger();
+        _sumOfDays = new AtomicInteger();
+        _sumOfPrices = new AtomicInteger();
+        _typeCounts = new AtomicInteger[4];
+        for (int i = 0; i < _typeCounts.length; i++)
+            _typeCounts[i] = new AtomicInteger();
+        _snapshotLock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Adds a new Rent to the company, like Company.addRent.
+     * If an equal Rent is already present (or is being added by another thread at the same time), the method returns false.
+     *
+     * @param name  - car name
+     * @param c     - car type
+     * @param start - start date of the rental
+     * @param end   - end date of the rental
+     * @return true if the Rent is successfully added, false if the Rent is already present.
+     */
+    public boolean addRent(String name, Car c, Date start, Date end) {
+        if (name == null || c == null || start == null || end == null) {
+            return false; // Handle null parameters
+        }
+        Rent newRent = new Rent(name, c, start, end);
+        RentNode node = new RentNode(newRent);
+        node.setSeq(_lastSeq.incrementAndGet());
+
+        _snapshotLock.readLock().lock();
+        try {
+            if (_byContent.putIfAbsent(newRent, node) != null) // claims the rent, only one thread can win
+                return false;
+            _order.add(node);
+            _byLength.add(node);
+            _byReturn.add(node);
+            ConcurrentSkipListSet<RentNode> sameDay = _byReturnDay.get(node.getReturnDay());
+            if (sameDay == null) {
+                ConcurrentSkipListSet<RentNode> created = new ConcurrentSkipListSet<RentNode>(RentNode.CHRONOLOGICAL);
+                sameDay = _byReturnDay.putIfAbsent(node.getReturnDay(), created);
+                if (sameDay == null)
+                    sameDay = created;
+            }
+            // the counters are updated before the node can be removed, so they never go below the true values
+            _numOfRents.incrementAndGet();
+            _sumOfDays.addAndGet(node.getDays());
+            _sumOfPrices.addAndGet(newRent.getPrice());
+            _typeCounts[newRent.getCarType() - 'A'].incrementAndGet();
+            sameDay.add(node); // last step, from here on removeRent can find it
+            return true;
+        } finally {
+            _snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the first Rent (in chronological order) that is returned on the given date, like Company.removeRent.
+     *
+     * @param d the return date of the Rent object to be removed
+     * @return true if a Rent was removed, false otherwise.
+     */
+    public boolean removeRent(Date d) {
+        if (d == null)
+            return false;
+        ConcurrentSkipListSet<RentNode> sameDay = _byReturnDay.get(d.toEpochDay());
+        if (sameDay == null)
+            return false;
+
+        _snapshotLock.readLock().lock();
+        try {
+            // pollFirst claims the node, so two threads never remove the same rent.
+            // Empty buckets are kept in the map, removing them could race with an addRent that already holds the bucket.
+            RentNode cancel = sameDay.pollFirst();
+            if (cancel == null)
+                return false;
+            _order.remove(cancel);
+            _byLength.remove(cancel);
+            _byReturn.remove(cancel);
+            Rent rent = cancel.peekRent();
+            _byContent.remove(rent, cancel); // last step, from here on an equal rent can be added again
+            _numOfRents.decrementAndGet();
+            _sumOfDays.addAndGet(-cancel.getDays());
+            _sumOfPrices.addAndGet(-rent.getPrice());
+            _typeCounts[rent.getCarType() - 'A'].decrementAndGet();
+            return true;
+        } finally {
+            _snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of rents in the company
+     *
+     * @return int, the number of rentals made
+     */
+    public int getNumOfRents() {
+        return _numOfRents.get();
+    }
+
+    /**
+     * Returns the total sum of prices of all the rents in the company.
+     *
+     * @return the total sum of prices in the company
+     */
+    public int getSumOfPrices() {
+        return _sumOfPrices.get();
+    }
+
+    /**
+     * Returns the total sum of days of all the rents in the company
+     *
+     * @return int - the total number of days of all the rents in the company.
+     */
+    public int getSumOfDays() {
+        return _sumOfDays.get();
+    }
+
+    /**
+     * @return the average number of days of renting for the company, computed from one consistent state.
+     * If there are no rents, returns 0.
+     */
+    public double averageRent() {
+        _snapshotLock.writeLock().lock();
+        try {
+            if (_numOfRents.get() == 0)
+                return 0;
+            return (double) _sumOfDays.get() / _numOfRents.get();
+        } finally {
+            _snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the car of the rent with the latest return date, the first such rent in chronological order if there are several.
+     * Takes no lock: while other threads change the company, the rent is one that was in it during the call.
+     * <p>
+     * Time complexity: O(log n)
+     *
+     * @return the last rented car or null if there are no rents
+     */
+    public Car lastCarRent() {
+        RentNode last = first(_byReturn);
+        return last == null ? null : last.peekRent().getCar();
+    }
+
+    /**
+     * Returns the longest rent, the first such rent in chronological order if there are several.
+     * Takes no lock: while other threads change the company, the rent is one that was in it during the call.
+     * <p>
+     * Time complexity: O(log n)
+     *
+     * @return the longest rent in the company, null if there are no rents
+     */
+    public Rent longestRent() {
+        RentNode longest = first(_byLength);
+        return longest == null ? null : new Rent(longest.peekRent());
+    }
+
+    private static RentNode first(ConcurrentSkipListSet<RentNode> set) { // null if the set is empty, even if it empties meanwhile
+        try {
+            return set.first();
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the most common car type among all the rents, ties are broken like Company.mostCommonRate().
+     *
+     * @return the most common car type as a character('A','B','C', or 'D') 'N' if there are no rents.
+     */
+    public char mostCommonRate() {
+        _snapshotLock.writeLock().lock();
+        try {
+            if (_numOfRents.get() == 0)
+                return 'N';
+            int common = 0;
+            for (AtomicInteger count : _typeCounts)
+                common = Math.max(common, count.get());
+            for (int i = _typeCounts.length - 1; i > 0; i--) {
+                if (_typeCounts[i].get() == common)
+                    return (char) ('A' + i);
+            }
+            return 'A';
+        } finally {
+            _snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if this company includes all the rents of another company.
+     *
+     * @param other The other company to be compared with this one.
+     * @return true if every rent of the other company is in this company, false otherwise.
+     */
+    public boolean includes(ConcurrentCompany other) {
+        ArrayList<Rent> otherRents = other.snapshot(); // never hold both companies' locks at once
+        _snapshotLock.writeLock().lock();
+        try {
+            for (Rent r : otherRents) {
+                if (!_byContent.containsKey(r))
+                    return false;
+            }
+            return true;
+        } finally {
+            _snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds all the rents of another company to this company, rents already present are skipped.
+     *
+     * @param other The other company that is being merged with this company
+     */
+    public void merge(ConcurrentCompany other) {
+        if (other == this)
+            return;
+        for (Rent r : other.snapshot())
+            addRent(r.getName(), r.getCar(), r.getPickDate(), r.getReturnDate());
+    }
+
+    private ArrayList<Rent> snapshot() { // the stored rents, in chronological order, from one consistent state
+        _snapshotLock.writeLock().lock();
+        try {
+            ArrayList<Rent> rents = new ArrayList<Rent>(_numOfRents.get());
+            for (RentNode curr : _order)
+                rents.add(curr.peekRent());
+            return rents;
+        } finally {
+            _snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a string representation of the company in the same format as Company.toString().
+     *
+     * @return a string representation of the company and its rents.
+     */
+    public String toString() {
+        ArrayList<Rent> rents = snapshot();
+        if (rents.isEmpty())
+            return "The company has 0 rents.";
+        StringBuilder s = new StringBuilder("The company has " + rents.size() + " rents:\n");
+        for (Rent r : rents)
+            s.append(r).append('\n');
+        return s.toString();
+    }
+}
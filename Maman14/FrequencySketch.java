@@ -0,0 +1,184 @@
+package Maman14;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Approximate counts of the strings of a large stream (brands or renter names), in a fixed amount of memory.
+ * <p>
+ * A Count-Min sketch (DEPTH rows of WIDTH counters, one hashed counter per row for every string) answers
+ * "how many times was this string counted": the smallest of its counters, which is never below the true count.
+ * <p>
+ * A Space-Saving table follows the most frequent strings: it keeps up to CAPACITY strings with a count each.
+ * A new string that finds the table full replaces the string with the smallest count and takes over that count
+ * plus one, so without removals every string counted more than n/CAPACITY times is kept (n being the number of
+ * adds). A string that enters the table starts from at least its Count-Min estimate, so the kept counts are never
+ * below the true counts, also with removals.
+ * <p>
+ * Removals lower the count of a kept string, never above its Count-Min estimate, and drop it when that reaches 0;
+ * top skips strings whose estimate is 0. A string that was replaced is not brought back by removals of other
+ * strings, so once a string has been replaced (see hasReplaced) removals can leave a frequent string out of the
+ * table until it is counted again.
+ *
+ * @author Osher Akshikar
+ * @version 2023a
+ */
+class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 1 << 14; // counters in a row, a power of two
+    private static final int CAPACITY = 1024; // strings followed by the Space-Saving table
+
+    /**
+     * A string followed by the Space-Saving table, with its count
+     */
+    private static class Entry implements Comparable<Entry> {
+        private final String _key;
+        private int _count;
+
+        private Entry(String key, int count) {
+            _key = key;
+            _count = count;
+        }
+
+        public int compareTo(Entry other) { // larger counts first, then by string
+            if (_count != other._count)
+                return _count > other._count ? -1 : 1;
+            return _key.compareTo(other._key);
+        }
+    }
+
+    private final int[] _counters; // DEPTH rows of WIDTH counters
+    private final HashMap<String, Entry> _followed;
+    private final TreeSet<Entry> _ranking; // the followed entries, largest count first
+    private boolean _replaced; // a followed string was replaced by a new one
+
+    /**
+     * Constructor for an empty sketch
+     */
+    FrequencySketch() {
+        _counters = new int[DEPTH * WIDTH];
+        _followed = new HashMap<String, Entry>();
+        _ranking = new TreeSet<Entry>();
+    }
+
+    /**
+     * Counts one more occurrence of a string.
+     * <p>
+     * Time complexity: O(DEPTH + log CAPACITY)
+     *
+     * @param key the string
+     */
+    void add(String key) {
+        int hash = hash(key);
+        for (int row = 0; row < DEPTH; row++)
+            _counters[row * WIDTH + column(hash, row)]++;
+
+        Entry entry = _followed.get(key);
+        if (entry != null) {
+            recount(entry, entry._count + 1);
+        } else {
+            int count = estimate(key); // the string may have been counted before it was replaced
+            if (_followed.size() == CAPACITY) {
+                Entry smallest = _ranking.pollLast(); // replaced by the new string
+                _followed.remove(smallest._key);
+                _replaced = true;
+                count = Math.max(count, smallest._count + 1);
+            }
+            entry = new Entry(key, count);
+            _followed.put(key, entry);
+            _ranking.add(entry);
+        }
+    }
+
+    /**
+     * Counts one less occurrence of a string that was added before.
+     * <p>
+     * Time complexity: O(DEPTH + log CAPACITY)
+     *
+     * @param key the string
+     */
+    void remove(String key) {
+        int hash = hash(key);
+        for (int row = 0; row < DEPTH; row++)
+            _counters[row * WIDTH + column(hash, row)]--;
+
+        Entry entry = _followed.get(key);
+        if (entry == null)
+            return;
+        int count = Math.min(entry._count - 1, estimate(key)); // the estimate is an upper bound too
+        if (count <= 0) {
+            _followed.remove(key);
+            _ranking.remove(entry);
+        } else {
+            recount(entry, count);
+        }
+    }
+
+    /**
+     * Returns an estimate of the number of times a string is counted, never below the true number.
+     * <p>
+     * Time complexity: O(DEPTH)
+     *
+     * @param key the string
+     * @return the estimated count
+     */
+    int estimate(String key) {
+        int hash = hash(key);
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++)
+            min = Math.min(min, _counters[row * WIDTH + column(hash, row)]);
+        return min;
+    }
+
+    /**
+     * Returns the k strings with the largest kept counts, largest first, leaving out strings whose Count-Min
+     * estimate is 0 (they have no count left).
+     * <p>
+     * Time complexity: O(k * DEPTH) plus the strings left out
+     *
+     * @param k the number of strings
+     * @return up to k strings
+     */
+    List<String> top(int k) {
+        List<String> top = new ArrayList<String>();
+        Iterator<Entry> entries = _ranking.iterator();
+        while (top.size() < k && entries.hasNext()) {
+            String key = entries.next()._key;
+            if (estimate(key) > 0)
+                top.add(key);
+        }
+        return top;
+    }
+
+    /**
+     * Checks if a followed string was ever replaced by a new one. Until then the table follows every string
+     * counted and its counts are exact.
+     *
+     * @return true if a string was replaced
+     */
+    boolean hasReplaced() {
+        return _replaced;
+    }
+
+    private void recount(Entry entry, int count) { // the entry is taken out of the ranking while its order changes
+        _ranking.remove(entry);
+        entry._count = count;
+        _ranking.add(entry);
+    }
+
+    private static int hash(String key) { // spreads the bits of String.hashCode (murmur3 finalizer)
+        int h = key == null ? 0 : key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    private static int column(int hash, int row) { // one independent-looking column per row, from two halves of the hash
+        return ((hash >>> 16) + row * ((hash & 0xFFFF) | 1)) & (WIDTH - 1);
+    }
+}
@@ -0,0 +1,155 @@
+package Maman14;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An interval tree over rent nodes: a treap ordered like Company's list (RentNode.CHRONOLOGICAL) where every
+ * tree node also keeps the latest return day in its subtree. A rent covers the closed range of days from its
+ * pick day to its return day, the same ranges Rent.overlap compares, so two rents that touch on one day overlap.
+ * <p>
+ * Inserts and removals take O(log n) expected time (see Treap). A query skips every subtree whose latest return
+ * day is before the queried range and every right subtree that starts after it, and returns the matching nodes
+ * in chronological order.
+ *
+ * @author Osher Akshikar
+ * @version 2023a
+ */
+class IntervalTree extends Treap<IntervalTree.Node> {
+    /**
+     * One tree node, holding one rent node and the latest return day of its subtree
+     */
+    static class Node extends Treap.Node<Node> {
+        private int _maxReturn; // latest return day in this subtree
+
+        private Node(RentNode rent) {
+            super(rent);
+            _maxReturn = rent.getReturnDay();
+        }
+
+        void update() {
+            _maxReturn = _rent.getReturnDay();
+            if (_left != null && _left._maxReturn > _maxReturn)
+                _maxReturn = _left._maxReturn;
+            if (_right != null && _right._maxReturn > _maxReturn)
+                _maxReturn = _right._maxReturn;
+        }
+    }
+
+    int compare(RentNode rent, Node node) {
+        return RentNode.CHRONOLOGICAL.compare(rent, node._rent);
+    }
+
+    /**
+     * Adds a rent node to the tree.
+     *
+     * @param rent the rent node to add, not already in the tree
+     */
+    void add(RentNode rent) {
+        insert(new Node(rent));
+    }
+
+    /**
+     * Removes a rent node from the tree.
+     *
+     * @param rent the rent node to remove
+     * @return true if the node was in the tree
+     */
+    boolean remove(RentNode rent) {
+        return delete(rent);
+    }
+
+    /**
+     * Adds to out, in chronological order, every rent node whose days overlap the closed range from..to.
+     *
+     * @param from the first day of the range (epoch day)
+     * @param to   the last day of the range (epoch day)
+     * @param out  the list the matching nodes are added to
+     */
+    void overlapping(int from, int to, List<RentNode> out) {
+        overlapping(_root, from, to, out);
+    }
+
+    /**
+     * Returns the rent nodes whose days overlap the closed range from..to, in chronological order, one at a time.
+     * The iterator walks the tree with a stack of at most the tree's height, so nothing is collected in advance.
+     * The tree must not change while the iterator is used.
+     *
+     * @param from the first day of the range (epoch day)
+     * @param to   the last day of the range (epoch day)
+     * @return an iterator over the matching nodes
+     */
+    Iterator<RentNode> overlapping(final int from, final int to) {
+        return new Iterator<RentNode>() {
+            private final ArrayDeque<Node> _path = new ArrayDeque<Node>(); // nodes whose left side is done, next on top
+            private RentNode _next;
+
+            {
+                descend(_root);
+                advance();
+            }
+
+            public boolean hasNext() {
+                return _next != null;
+            }
+
+            public RentNode next() {
+                if (_next == null)
+                    throw new NoSuchElementException();
+                RentNode result = _next;
+                advance();
+                return result;
+            }
+
+            private void descend(Node node) { // pushes the left spine, leaving out subtrees returned before the range
+                for (; node != null && node._maxReturn >= from; node = node._left)
+                    _path.push(node);
+            }
+
+            private void advance() { // finds the next matching node, in order
+                _next = null;
+                while (!_path.isEmpty()) {
+                    Node node = _path.pop();
+                    if (node._rent.getPickDay() > to) {
+                        _path.clear(); // this node and every later one start after the range
+                        return;
+                    }
+                    descend(node._right);
+                    if (node._rent.getReturnDay() >= from) {
+                        _next = node._rent;
+                        return;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Adds all the rent nodes of the tree to out, in chronological order.
+     *
+     * @param out the list the nodes are added to
+     */
+    void all(List<RentNode> out) {
+        inOrder(_root, out);
+    }
+
+    private static void overlapping(Node root, int from, int to, List<RentNode> out) {
+        if (root == null || root._maxReturn < from)
+            return; // everything here is returned before the range starts
+        overlapping(root._left, from, to, out);
+        if (root._rent.getPickDay() > to)
+            return; // this rent and everything to its right start after the range
+        if (root._rent.getReturnDay() >= from)
+            out.add(root._rent);
+        overlapping(root._right, from, to, out);
+    }
+
+    private static void inOrder(Node root, List<RentNode> out) {
+        for (; root != null; root = root._right) {
+            inOrder(root._left, out);
+            out.add(root._rent);
+        }
+    }
+}
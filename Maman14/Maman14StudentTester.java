@@ -2,10 +2,32 @@ package Maman14;
 
 import Maman12.*;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Comprehensive Tester for Maman 14 with Pass/Fail Validation
  */
 public class Maman14StudentTester {
+    private static final int RANDOM_STEPS = 400; // changes made by every randomized section
+    private static final int RANDOM_CAR = 1000000; // id of the first car of the random rents
+
     private static int totalTests = 0;
     private static int passedTests = 0;
 
@@ -132,6 +154,14 @@ public class Maman14StudentTester {
         checkTest("Duplicate prevention", false, duplicate);
         checkTest("Rent count after duplicate attempt", 3, company1.getNumOfRents());
 
+        // A rent is a duplicate only if its return date is the same too
+        Rent sameStart = new Rent("David Cohen", new Car(1122233, 'B', "Mercedes", false), new Date(12, 3, 2004), new Date(7, 7, 2004));
+        checkTest("Rent equals - different return date", false, sameStart.equals(new Rent("David Cohen", new Car(1122233, 'B', "Mercedes", false), new Date(12, 3, 2004), new Date(6, 7, 2004))));
+        checkTest("Rent equals - same return date", true, sameStart.equals(new Rent(sameStart)));
+        Company returnDates = new Company();
+        returnDates.addRent("David Cohen", new Car(1122233, 'B', "Mercedes", false), new Date(12, 3, 2004), new Date(6, 7, 2004));
+        checkTest("Not a duplicate - different return date", true, returnDates.addRent("David Cohen", new Car(1122233, 'B', "Mercedes", false), new Date(12, 3, 2004), new Date(7, 7, 2004)));
+
         // Test null parameter handling
         boolean nullTest = company1.addRent(null, new Car(1111111, 'A', "Test", true), new Date(1, 1, 2020), new Date(5, 1, 2020));
         checkTest("Null parameter handling", false, nullTest);
@@ -201,6 +231,676 @@ public class Maman14StudentTester {
         int shortPos = companyStr.indexOf("Short Rental");
         checkTest("Same pickup dates - longer rental first", true, longPos < shortPos);
 
+        //-----------------------Overlap Index Tests---------------------
+        System.out.println("\n=== OVERLAP INDEX TESTS ===\n");
+
+        Company bookings = new Company();
+        Car shared1 = new Car(4444444, 'B', "Kia", false);
+        bookings.addRent("Dana", shared1, new Date(1, 3, 2022), new Date(5, 3, 2022));
+        bookings.addRent("Dana", shared1, new Date(5, 3, 2022), new Date(9, 3, 2022)); // touches the first one
+        bookings.addRent("Dana", shared1, new Date(20, 3, 2022), new Date(22, 3, 2022));
+        bookings.addRent("Omer", shared1, new Date(3, 3, 2022), new Date(4, 3, 2022)); // other renter, never joined
+        checkTest("Overlap - touching rents form one pair", 1, bookings.overlappingRents().size());
+        checkTest("Overlap - coalesced rents", 3, bookings.coalescedRents().size());
+        checkTest("Overlap - union covers both rents", 8, bookings.coalescedRents().get(0).howManyDays());
+        Company noBrands = new Company(); // a null brand only matches another null brand
+        Car unbranded = new Car(5555555, 'C', null, true);
+        noBrands.addRent("Dana", unbranded, new Date(1, 3, 2022), new Date(5, 3, 2022));
+        noBrands.addRent("Dana", new Car(5555556, 'C', null, true), new Date(4, 3, 2022), new Date(8, 3, 2022));
+        noBrands.addRent("Dana", new Car(5555557, 'C', "Kia", true), new Date(2, 3, 2022), new Date(6, 3, 2022));
+        checkTest("Overlap - null brands form one pair", 1, noBrands.overlappingRents().size());
+        checkTest("Overlap - null brands coalesced", 2, noBrands.coalescedRents().size());
+        checkTest("Overlap - car with no brand equals only a car with no brand", true,
+                unbranded.equals(new Car(5555556, 'C', null, true)) && !unbranded.equals(new Car(5555557, 'C', "Kia", true)) && !new Car(5555557, 'C', "Kia", true).equals(unbranded));
+        checkTest("Overlap - holders of the car on 3/3", 2, bookings.holdersOf(4444444, new Date(3, 3, 2022)).size());
+        bookings.removeRent(new Date(4, 3, 2022));
+        checkTest("Overlap - index follows removeRent", 1, bookings.holdersOf(4444444, new Date(3, 3, 2022)).size());
+        checkTest("Overlap - unknown car", 0, bookings.holdersOf(7777777, new Date(3, 3, 2022)).size());
+
+        // Random changes, every answer compared with a brute force pass over the list
+        Random random = new Random(2023);
+        Company randomOverlaps = new Company();
+        int pairMismatches = 0;
+        int coalesceMismatches = 0;
+        int holderMismatches = 0;
+        for (int step = 0; step < RANDOM_STEPS; step++) {
+            randomChange(randomOverlaps, random);
+            ArrayList<Rent> rents = rentsOf(randomOverlaps);
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < rents.size(); i++) {
+                for (int j = i + 1; j < rents.size(); j++) {
+                    if (rents.get(i).overlap(rents.get(j)) != null)
+                        expected.append(keyOf(rents.get(i))).append(" & ").append(keyOf(rents.get(j))).append('\n');
+                }
+            }
+            StringBuilder actual = new StringBuilder();
+            for (Rent[] pair : randomOverlaps.overlappingRents())
+                actual.append(keyOf(pair[0])).append(" & ").append(keyOf(pair[1])).append('\n');
+            if (!expected.toString().equals(actual.toString()))
+                pairMismatches++;
+            if (!keysOf(coalesce(rents)).equals(keysOf(randomOverlaps.coalescedRents())))
+                coalesceMismatches++;
+            for (int carId = RANDOM_CAR; carId < RANDOM_CAR + 3; carId++) {
+                for (int day = 1; day <= 14; day++) {
+                    Date d = new Date(day, 1, 2020);
+                    ArrayList<Rent> holders = new ArrayList<Rent>();
+                    for (Rent r : rents) {
+                        if (r.getCarId() == carId && !d.before(r.getPickDate()) && !d.after(r.getReturnDate()))
+                            holders.add(r);
+                    }
+                    if (!listKeys(holders).equals(listKeys(randomOverlaps.holdersOf(carId, d))))
+                        holderMismatches++;
+                }
+            }
+        }
+        checkTest("Overlap - random pairs match brute force", 0, pairMismatches);
+        checkTest("Overlap - random coalesced rents match brute force", 0, coalesceMismatches);
+        checkTest("Overlap - random holders match brute force", 0, holderMismatches);
+
+        //-----------------------Availability Tests---------------------
+        System.out.println("\n=== AVAILABILITY TESTS ===\n");
+
+        // bookings now holds Dana's three rents of car 4444444: 1/3-9/3 (two rents) and 20/3-22/3
+        checkTest("Availability - busy car", false, bookings.isCarFree(4444444, new Date(8, 3, 2022), new Date(12, 3, 2022)));
+        checkTest("Availability - free from the return date", true, bookings.isCarFree(4444444, new Date(9, 3, 2022), new Date(20, 3, 2022)));
+        checkTest("Availability - unknown car is free", true, bookings.isCarFree(7777777, new Date(1, 3, 2022), new Date(30, 3, 2022)));
+        checkTest("Availability - free cars of type B", 1, bookings.freeCars('B', new Date(15, 3, 2022)).size());
+        checkTest("Availability - no free cars of type B", 0, bookings.freeCars('B', new Date(21, 3, 2022)).size());
+        bookings.setRejectConflicts(true);
+        checkTest("Availability - conflicting rent refused", false, bookings.addRent("Noa", shared1, new Date(21, 3, 2022), new Date(25, 3, 2022)));
+        checkTest("Availability - rent from the return date accepted", true, bookings.addRent("Noa", shared1, new Date(22, 3, 2022), new Date(25, 3, 2022)));
+        Car strictCar = new Car(4545454, 'A', "Seat", true);
+        Company strictBulk = new Company();
+        strictBulk.setRejectConflicts(true);
+        strictBulk.addAll(Arrays.asList(new Rent("Later", strictCar, new Date(5, 4, 2022), new Date(9, 4, 2022)),
+                new Rent("Earlier", strictCar, new Date(3, 4, 2022), new Date(6, 4, 2022))).iterator());
+        checkTest("Availability - bulk load refuses the second conflicting rent", 1, strictBulk.getNumOfRents());
+        checkTest("Availability - bulk load keeps the first rent of the input", "Later", strictBulk.longestRent().getName());
+        bookings.removeRent(new Date(9, 3, 2022));
+        checkTest("Availability - days of the other rent stay booked", false, bookings.isCarFree(4444444, new Date(2, 3, 2022), new Date(3, 3, 2022)));
+        checkTest("Availability - removed days are free", true, bookings.isCarFree(4444444, new Date(5, 3, 2022), new Date(9, 3, 2022)));
+
+        // Random ranges around chunk and word boundaries and negative days, against one boolean per day
+        CarCalendar calendar = new CarCalendar();
+        boolean[] booked = new boolean[2400]; // days -1200..1199
+        int calendarMismatches = 0;
+        for (int step = 0; step < RANDOM_STEPS * 5; step++) {
+            int from = random.nextInt(booked.length);
+            int to = Math.min(booked.length, from + random.nextInt(random.nextBoolean() ? 70 : 700));
+            if (random.nextInt(3) > 0) {
+                boolean book = random.nextBoolean();
+                if (book)
+                    calendar.book(from - 1200, to - 1200);
+                else
+                    calendar.free(from - 1200, to - 1200);
+                Arrays.fill(booked, from, to, book);
+            } else {
+                boolean free = true;
+                for (int day = from; day < to; day++)
+                    free &= !booked[day];
+                if (free != calendar.isFree(from - 1200, to - 1200))
+                    calendarMismatches++;
+            }
+        }
+        checkTest("Availability - random calendar ranges match brute force", 0, calendarMismatches);
+
+        // Random changes in strict mode, every answer compared with a brute force pass over the list
+        Company randomBookings = new Company();
+        randomBookings.setRejectConflicts(true);
+        int strictMismatches = 0;
+        int freeMismatches = 0;
+        for (int step = 0; step < RANDOM_STEPS; step++) {
+            ArrayList<Rent> rents = rentsOf(randomBookings);
+            Rent r = randomRent(random);
+            boolean accepted = !rents.contains(r) && isFree(rents, r.getCarId(), r.getPickDate().toEpochDay(), r.getReturnDate().toEpochDay());
+            if (accepted != randomBookings.addRent(r.getName(), r.getCar(), r.getPickDate(), r.getReturnDate()))
+                strictMismatches++;
+            if (random.nextInt(3) == 0)
+                randomBookings.removeRent(new Date(2 + random.nextInt(12), 1, 2020));
+            rents = rentsOf(randomBookings);
+            for (int carId = RANDOM_CAR; carId < RANDOM_CAR + 3; carId++) {
+                for (int pick = 1; pick <= 13; pick++) {
+                    Date from = new Date(pick, 1, 2020);
+                    Date to = new Date(pick + random.nextInt(4), 1, 2020);
+                    int first = from.toEpochDay();
+                    if (isFree(rents, carId, first, Math.max(to.toEpochDay(), first + 1)) != randomBookings.isCarFree(carId, from, to))
+                        freeMismatches++;
+                }
+            }
+            for (char type = 'A'; type <= 'D'; type++) {
+                Date d = new Date(1 + random.nextInt(13), 1, 2020);
+                TreeSet<Integer> free = new TreeSet<Integer>();
+                for (Rent rent : rents) {
+                    if (rent.getCarType() == type && isFree(rents, rent.getCarId(), d.toEpochDay(), d.toEpochDay() + 1))
+                        free.add(rent.getCarId());
+                }
+                if (!new ArrayList<Integer>(free).equals(randomBookings.freeCars(type, d)))
+                    freeMismatches++;
+            }
+        }
+        checkTest("Availability - random strict mode matches brute force", 0, strictMismatches);
+        checkTest("Availability - random free cars match brute force", 0, freeMismatches);
+        ArrayList<Rent> input = new ArrayList<Rent>();
+        for (int i = 0; i < 60; i++)
+            input.add(randomRent(random));
+        Company strictOneByOne = new Company();
+        strictOneByOne.setRejectConflicts(true);
+        for (Rent r : input)
+            strictOneByOne.addRent(r.getName(), r.getCar(), r.getPickDate(), r.getReturnDate());
+        Company strictLoaded = new Company();
+        strictLoaded.setRejectConflicts(true);
+        strictLoaded.addAll(input.iterator());
+        checkTest("Availability - random strict bulk load same as addRent", strictOneByOne.toString(), strictLoaded.toString());
+
+        //-----------------------Order Statistics Tests---------------------
+        System.out.println("\n=== ORDER STATISTICS TESTS ===\n");
+
+        Company lengths = new Company();
+        for (int days = 1; days <= 9; days++)
+            lengths.addRent("Renter" + days, new Car(5000000 + days, 'A', "Fiat", true), new Date(1, 5, 2022), new Date(1 + days, 5, 2022));
+        checkTest("Order statistics - longest rents", 9, lengths.longestRents(3).get(0).howManyDays());
+        checkTest("Order statistics - third longest", 7, lengths.longestRents(3).get(2).howManyDays());
+        checkTest("Order statistics - latest returns", "10/05/2022", lengths.latestReturns(2).get(0).getReturnDate().toString());
+        checkTest("Order statistics - median of odd count", 5.0, lengths.medianRentLength());
+        checkTest("Order statistics - 90th percentile", 9, lengths.rentLengthPercentile(90));
+        checkTest("Order statistics - longer than 6 days", 3, lengths.countLongerThan(6));
+        lengths.removeRent(new Date(10, 5, 2022));
+        checkTest("Order statistics - longest after remove", 8, lengths.longestRent().howManyDays());
+        checkTest("Order statistics - median of even count", 4.5, lengths.medianRentLength());
+
+        // Random changes, every query compared with sorted copies of the list
+        Company randomLengths = new Company();
+        int topMismatches = 0;
+        int rankMismatches = 0;
+        for (int step = 0; step < RANDOM_STEPS; step++) {
+            randomChange(randomLengths, random);
+            ArrayList<Rent> rents = rentsOf(randomLengths);
+            ArrayList<Rent> byLength = new ArrayList<Rent>(rents);
+            Collections.sort(byLength, new Comparator<Rent>() { // stable, equal lengths stay in list order
+                public int compare(Rent first, Rent second) {
+                    return second.howManyDays() - first.howManyDays();
+                }
+            });
+            ArrayList<Rent> byReturn = new ArrayList<Rent>(rents);
+            Collections.sort(byReturn, new Comparator<Rent>() {
+                public int compare(Rent first, Rent second) {
+                    return second.getReturnDate().toEpochDay() - first.getReturnDate().toEpochDay();
+                }
+            });
+            int k = 1 + random.nextInt(rents.size() + 2);
+            if (!listKeys(byLength.subList(0, Math.min(k, rents.size()))).equals(listKeys(randomLengths.longestRents(k))))
+                topMismatches++;
+            if (!listKeys(byReturn.subList(0, Math.min(k, rents.size()))).equals(listKeys(randomLengths.latestReturns(k))))
+                topMismatches++;
+            int[] days = new int[rents.size()];
+            for (int i = 0; i < days.length; i++)
+                days[i] = rents.get(i).howManyDays();
+            Arrays.sort(days);
+            double median = days.length == 0 ? 0 : (days[(days.length - 1) / 2] + days[days.length / 2]) / 2.0;
+            if (median != randomLengths.medianRentLength())
+                rankMismatches++;
+            for (int longer = 0; longer <= 7; longer++) {
+                int count = 0;
+                for (int d : days) {
+                    if (d > longer)
+                        count++;
+                }
+                if (count != randomLengths.countLongerThan(longer))
+                    rankMismatches++;
+            }
+            for (double percent : new double[]{0, 1, 25, 50, 90, 99.9, 100}) {
+                int nearestRank = days.length == 0 ? 0 : days[Math.max(1, (int) Math.ceil(percent / 100 * days.length)) - 1];
+                if (nearestRank != randomLengths.rentLengthPercentile(percent))
+                    rankMismatches++;
+            }
+        }
+        checkTest("Order statistics - random top rents match sorted copies", 0, topMismatches);
+        checkTest("Order statistics - random ranks match sorted copies", 0, rankMismatches);
+
+        //-----------------------Counters and Sketches Tests---------------------
+        System.out.println("\n=== COUNTERS AND SKETCHES TESTS ===\n");
+
+        // lengths holds eight manual 'A' Fiat rents of different renters
+        lengths.addRent("Renter2", new Car(5100000, 'C', "Audi", false), new Date(2, 5, 2022), new Date(4, 5, 2022));
+        lengths.addRent("Renter2", new Car(5100001, 'C', "Audi", false), new Date(12, 5, 2022), new Date(15, 5, 2022));
+        checkTest("Counters - type count", 2, lengths.countOfType('C'));
+        checkTest("Counters - manual count", 8, lengths.countManual());
+        checkTest("Counters - automatic count", 2, lengths.countAutomatic());
+        checkTest("Sketches - most rented brand", "Fiat", lengths.mostRentedBrands(2).get(0));
+        checkTest("Sketches - most frequent renter", "Renter2", lengths.mostFrequentRenters(1).get(0));
+        checkTest("Sketches - brand estimate", 2, lengths.estimatedRentsOfBrand("Audi"));
+        lengths.removeRent(new Date(15, 5, 2022));
+        checkTest("Sketches - estimate after remove", 1, lengths.estimatedRentsOfBrand("Audi"));
+        // A string replaced in the table and added again must not rank below strings counted less often
+        FrequencySketch sketch = new FrequencySketch();
+        for (int i = 0; i < 5; i++) {
+            sketch.add("Y");
+            for (int key = 1; key < 1024; key++)
+                sketch.add("K" + key);
+        }
+        sketch.add("Z"); // replaces "Y", the last of the strings counted 5 times
+        for (int i = 0; i < 4; i++) {
+            for (int key = 1; key < 1024; key++)
+                sketch.remove("K" + key);
+        }
+        sketch.add("Y"); // counted 6 times, every other string once
+        checkTest("Sketches - replaced string counted again after removals", "Y", sketch.top(1).get(0));
+        FrequencySketch emptied = new FrequencySketch();
+        emptied.add("Zeta");
+        for (int key = 0; key < 1024; key++)
+            emptied.add("K" + key); // the last one replaces "Zeta"
+        for (int key = 0; key < 1024; key++)
+            emptied.remove("K" + key);
+        checkTest("Sketches - strings with no count left are not returned", 0, emptied.top(1).size());
+        Company brandsLeft = new Company();
+        Date brandDay = new Date(1, 1, 2010);
+        brandsLeft.addRent("Renter", new Car(2222222, 'A', "Zeta", true), brandDay, Date.ofEpochDay(brandDay.toEpochDay() + 2000));
+        for (int key = 0; key < 1024; key++)
+            brandsLeft.addRent("Renter", new Car(2222222, 'A', "K" + key, true), brandDay, Date.ofEpochDay(brandDay.toEpochDay() + 1 + key));
+        brandsLeft.mostRentedBrands(1); // builds the sketches before the removals
+        for (int key = 0; key < 1024; key++)
+            brandsLeft.removeRent(Date.ofEpochDay(brandDay.toEpochDay() + 1 + key));
+        checkTest("Sketches - only brand left after many removals", "[Zeta]", brandsLeft.mostRentedBrands(1).toString());
+
+        //-----------------------Date Range Tests---------------------
+        System.out.println("\n=== DATE RANGE TESTS ===\n");
+
+        Company ranges = new Company();
+        ranges.addRent("Range1", new Car(6000001, 'A', "Kia", true), new Date(1, 6, 2022), new Date(10, 6, 2022));
+        ranges.addRent("Range2", new Car(6000002, 'B', "Kia", true), new Date(3, 6, 2022), new Date(4, 6, 2022));
+        ranges.addRent("Range3", new Car(6000003, 'C', "Kia", true), new Date(5, 6, 2022), new Date(6, 6, 2022));
+        ranges.addRent("Range4", new Car(6000004, 'D', "Kia", true), new Date(8, 6, 2022), new Date(12, 6, 2022));
+        Iterator<Rent> picked = ranges.rentalsPickedBetween(new Date(2, 6, 2022), new Date(5, 6, 2022));
+        checkTest("Date range - first picked in range", "Range2", picked.next().getName());
+        checkTest("Date range - last picked in range", "Range3", picked.next().getName());
+        checkTest("Date range - nothing after the range", false, picked.hasNext());
+        checkTest("Date range - empty range", false, ranges.rentalsPickedBetween(new Date(13, 6, 2022), new Date(20, 6, 2022)).hasNext());
+        int active = 0;
+        for (Iterator<Rent> on = ranges.rentalsActiveOn(new Date(4, 6, 2022)); on.hasNext(); on.next())
+            active++;
+        checkTest("Date range - active on a day, return day included", 2, active);
+        Iterator<Rent> changed = ranges.rentalsActiveOn(new Date(9, 6, 2022));
+        ranges.removeRent(new Date(12, 6, 2022));
+        boolean failed = false;
+        try {
+            changed.hasNext();
+        } catch (ConcurrentModificationException e) {
+            failed = true;
+        }
+        checkTest("Date range - change during iteration is detected", true, failed);
+        checkTest("Date range - removed rent no longer active", "Range1", ranges.rentalsActiveOn(new Date(9, 6, 2022)).next().getName());
+
+        //-----------------------Bulk Load Tests---------------------
+        System.out.println("\n=== BULK LOAD TESTS ===\n");
+
+        // addAll must build the same company as adding the rents one by one, duplicates included
+        Date bulkBase = new Date(1, 1, 2021);
+        Rent[] bulk = new Rent[500];
+        for (int i = 0; i < bulk.length; i++) {
+            bulk[i] = new Rent("Renter " + i % 5, new Car(2000000 + i % 50, (char) ('A' + i % 4), "Brand" + i % 3, i % 2 == 0),
+                    Date.ofEpochDay(bulkBase.toEpochDay() + i * 7 % 90), Date.ofEpochDay(bulkBase.toEpochDay() + i * 7 % 90 + 1 + i % 11));
+        }
+        Company oneByOne = new Company();
+        for (Rent r : bulk)
+            oneByOne.addRent(r.getName(), r.getCar(), r.getPickDate(), r.getReturnDate());
+        Company bulkLoaded = new Company();
+        int bulkAdded = bulkLoaded.addAll(Arrays.asList(bulk).iterator());
+        checkTest("Bulk load - added count", oneByOne.getNumOfRents(), bulkAdded);
+        checkTest("Bulk load - same order as addRent", oneByOne.toString(), bulkLoaded.toString());
+        checkTest("Bulk load - same prices as addRent", oneByOne.getSumOfPrices(), bulkLoaded.getSumOfPrices());
+        checkTest("Bulk load - second load adds nothing", 0, bulkLoaded.addAll(Arrays.stream(bulk)));
+        checkTest("Bulk load - removeRent still works", true, bulkLoaded.removeRent(bulk[0].getReturnDate()));
+        Company trailingNull = new Company();
+        checkTest("Bulk load - input ending with a skipped rent", 2, trailingNull.addAll(Arrays.asList(bulk[1], bulk[2], null).iterator()));
+        checkTest("Bulk load - rents before the skipped one are kept", 2, trailingNull.getNumOfRents());
+
+        // Rent files: a gear other than manual or auto, or a date that does not exist, is refused with its line number
+        try {
+            Path rentFile = Files.createTempFile("rents", ".csv");
+            try {
+                Files.write(rentFile, Arrays.asList("David Cohen,1122233,B,Mercedes,auto,12/03/2004,06/07/2004", "",
+                        "Dana Levi,1234567,A,Mazda,manual,02/08/2017,12/08/2017"), StandardCharsets.UTF_8);
+                Company fromFile = new Company();
+                checkTest("Rent file - well-formed file read", 2, fromFile.addAll(rentFile));
+                checkTest("Rent file - gear read", true, fromFile.getHead().getRent().getCar().isManual() != fromFile.getHead().getNext().getRent().getCar().isManual());
+
+                String[] malformed = {"Dana Levi,1234567,A,Mazda,manul,02/08/2017,12/08/2017",
+                        "Dana Levi,1234567,A,Mazda,manual,31/02/2017,12/03/2017",
+                        "Dana Levi,1234567,A,Mazda,manual,02/08/2017,12/13/2017",
+                        "Dana Levi,1234567,A,Mazda,manual,02/08/2017"};
+                for (String line : malformed) {
+                    Files.write(rentFile, Arrays.asList("David Cohen,1122233,B,Mercedes,auto,12/03/2004,06/07/2004", "", line), StandardCharsets.UTF_8);
+                    String message = "";
+                    try {
+                        new Company().addAll(rentFile);
+                    } catch (IllegalArgumentException e) {
+                        message = e.getMessage();
+                    }
+                    checkTest("Rent file - malformed line refused with its number: " + line, true, message.startsWith("Line 3:"));
+                }
+            } finally {
+                Files.deleteIfExists(rentFile);
+            }
+        } catch (IOException e) {
+            checkTest("Rent file - no IOException", "none", e.toString());
+        }
+
+        //-----------------------Text Output Tests---------------------
+        System.out.println("\n=== TEXT OUTPUT TESTS ===\n");
+
+        // writeTo and appendTo must write exactly toString, also when writeTo needs several blocks
+        Company small = new Company();
+        Rent smallRent = new Rent("Dana Levi", new Car(1234567, 'A', "Mazda", true), new Date(2, 8, 2017), new Date(12, 8, 2017));
+        small.addRent(smallRent.getName(), smallRent.getCar(), smallRent.getPickDate(), smallRent.getReturnDate());
+        Company large = new Company();
+        for (int i = 0; i < 1000; i++)
+            large.addRent("Renter " + i, new Car(3000000 + i, "ABCD".charAt(i % 4), "Brand" + i % 7, i % 2 == 0),
+                    Date.ofEpochDay(bulkBase.toEpochDay() + i % 300), Date.ofEpochDay(bulkBase.toEpochDay() + i % 300 + 1 + i % 9));
+        checkTest("Text output - small company format", "The company has 1 rents:\n" + smallRent + "\n", small.toString());
+        checkTest("Text output - large company longer than a write block", true, large.toString().length() > 2 * (1 << 15));
+        Company[] printed = {new Company(), small, oneByOne, large};
+        String[] printedNames = {"empty", "small", "bulk", "large"};
+        try {
+            for (int c = 0; c < printed.length; c++) {
+                StringWriter writer = new StringWriter();
+                printed[c].writeTo(writer);
+                checkTest("Text output - writeTo equals toString, " + printedNames[c], printed[c].toString(), writer.toString());
+                StringBuilder builder = new StringBuilder("prefix:");
+                printed[c].appendTo(builder);
+                checkTest("Text output - appendTo equals toString, " + printedNames[c], "prefix:" + printed[c], builder.toString());
+            }
+        } catch (IOException e) {
+            checkTest("Text output - no IOException", "none", e.toString());
+        }
+
+        //-----------------------Price Table Tests---------------------
+        System.out.println("\n=== PRICE TABLE TESTS ===\n");
+
+        boolean samePrices = true;
+        for (char type = 'A'; type <= 'D'; type++) {
+            for (int days = 0; days <= 5000; days++)
+                samePrices &= PriceTable.STANDARD.price(type, days) == Rent.getPrice(type, days);
+        }
+        checkTest("Price table - same prices as Rent.getPrice", true, samePrices);
+        checkTest("Price table - company total", (long) oneByOne.getSumOfPrices(), oneByOne.getSumOfPrices(PriceTable.STANDARD));
+        PriceTable doubled = new PriceTable(new Tariff() {
+            public int price(char type, int days) {
+                return 2 * Rent.getPrice(type, days);
+            }
+        }, 30);
+        checkTest("Price table - repriced with another tariff", 2L * oneByOne.getSumOfPrices(), oneByOne.getSumOfPrices(doubled));
+
+        //-----------------------Rent Table Tests---------------------
+        System.out.println("\n=== RENT TABLE TESTS ===\n");
+
+        RentTable emptyTable = new RentTable(new Company());
+        checkTest("Rent table - empty size", 0, emptyTable.size());
+        checkTest("Rent table - empty most common rate", 'N', emptyTable.mostCommonRate());
+        checkTest("Rent table - empty longest rent", true, emptyTable.longestRent() == null && emptyTable.lastCarRent() == null);
+        RentTable bulkTable = new RentTable(oneByOne);
+        checkTest("Rent table - rows in list order", listKeys(rentsOf(oneByOne)), listKeys(tableRents(bulkTable)));
+        checkTest("Rent table - repriced with another tariff", oneByOne.getSumOfPrices(doubled), bulkTable.getSumOfPrices(doubled));
+
+        // Random adds and removals, every analytic of a new table compared with the company's own
+        Company tabled = new Company();
+        int rowMismatches = 0;
+        int sumMismatches = 0;
+        int analyticMismatches = 0;
+        for (int step = 0; step < RANDOM_STEPS; step++) {
+            randomChange(tabled, random);
+            RentTable table = new RentTable(tabled);
+            RentTable added = new RentTable();
+            for (Rent r : rentsOf(tabled))
+                added.add(r);
+            if (table.size() != tabled.getNumOfRents() || !listKeys(rentsOf(tabled)).equals(listKeys(tableRents(table)))
+                    || !listKeys(tableRents(table)).equals(listKeys(tableRents(added))))
+                rowMismatches++;
+            if (table.getSumOfDays() != tabled.getSumOfDays() || table.getSumOfPrices() != tabled.getSumOfPrices()
+                    || table.getSumOfPrices(doubled) != tabled.getSumOfPrices(doubled))
+                sumMismatches++;
+            Rent longest = tabled.longestRent();
+            Rent tableLongest = table.longestRent();
+            if (!String.valueOf(tabled.lastCarRent()).equals(String.valueOf(table.lastCarRent()))
+                    || !(longest == null ? tableLongest == null : tableLongest != null && keyOf(longest).equals(keyOf(tableLongest)))
+                    || tabled.mostCommonRate() != table.mostCommonRate())
+                analyticMismatches++;
+        }
+        checkTest("Rent table - same rows as the company", 0, rowMismatches);
+        checkTest("Rent table - same sums as the company", 0, sumMismatches);
+        checkTest("Rent table - same last car, longest rent and rate as the company", 0, analyticMismatches);
+
+        //-----------------------Snapshot Tests---------------------
+        System.out.println("\n=== SNAPSHOT TESTS ===\n");
+
+        // A saved company must load back with the same rents in the same order
+        try {
+            Path snapshotFile = Files.createTempFile("company", ".snapshot");
+            CompanySnapshot.save(oneByOne, snapshotFile);
+            Company reloaded = CompanySnapshot.load(snapshotFile);
+            checkTest("Snapshot - same order after reload", oneByOne.toString(), reloaded.toString());
+            checkTest("Snapshot - same prices after reload", oneByOne.getSumOfPrices(), reloaded.getSumOfPrices());
+            checkTest("Snapshot - reloaded company includes original", true, reloaded.includes(oneByOne));
+            Company noBrand = new Company();
+            noBrand.addRent("No Brand", new Car(3333333, 'B', null, true), new Date(1, 1, 2022), new Date(3, 1, 2022));
+            CompanySnapshot.save(noBrand, snapshotFile);
+            checkTest("Snapshot - null brand kept", null, CompanySnapshot.load(snapshotFile).lastCarRent().getBrand());
+            // a later minor version with a longer header and records, and a newer major version
+            ByteBuffer later = ByteBuffer.allocate(40 + 26 + 4 + 3 + 4 + 4).order(ByteOrder.LITTLE_ENDIAN);
+            later.putInt(0x544E4552).putShort((short) 1).putShort((short) 3).putInt(40).putInt(26).putInt(1).putInt(2).putLong(40 + 26);
+            later.putLong(0); // header fields this version does not know
+            Date laterPick = new Date(1, 2, 2022);
+            later.putInt(laterPick.toEpochDay()).putInt(laterPick.toEpochDay() + 4).putInt(1212121).put((byte) 'C').put((byte) 1).putInt(0).putInt(1);
+            later.putInt(-1); // record fields this version does not know
+            later.putInt(3).put("Kia".getBytes(StandardCharsets.UTF_8)).putInt(4).put("Dana".getBytes(StandardCharsets.UTF_8));
+            Files.write(snapshotFile, later.array());
+            checkTest("Snapshot - later minor version read", 4, CompanySnapshot.load(snapshotFile).longestRent().howManyDays());
+            later.putShort(4, (short) (CompanySnapshot.FORMAT_VERSION + 1));
+            Files.write(snapshotFile, later.array());
+            boolean newerRefused = false;
+            try {
+                CompanySnapshot.load(snapshotFile);
+            } catch (IOException e) {
+                newerRefused = true;
+            }
+            checkTest("Snapshot - newer major version refused", true, newerRefused);
+            CompanySnapshot.save(new Company(), snapshotFile);
+            checkTest("Snapshot - empty company", 0, CompanySnapshot.load(snapshotFile).getNumOfRents());
+            Files.delete(snapshotFile);
+        } catch (IOException e) {
+            checkTest("Snapshot - no IOException", "none", e.toString());
+        }
+
+        //-----------------------Write-Ahead Log Tests---------------------
+        System.out.println("\n=== WRITE-AHEAD LOG TESTS ===\n");
+
+        // Changes made through the log must be rebuilt when the log is opened again, also after a compaction
+        try {
+            Path logDir = Files.createTempDirectory("company-log");
+            CompanyLog log = new CompanyLog(logDir, 10, 1 << 20);
+            for (Rent r : bulk)
+                log.addRent(r.getName(), r.getCar(), r.getPickDate(), r.getReturnDate());
+            checkTest("Log - removeRent recorded", true, log.removeRent(bulk[1].getReturnDate()));
+            String before = log.getCompany().toString();
+            log.close();
+            log = new CompanyLog(logDir, 10, 1 << 20);
+            checkTest("Log - company rebuilt from log", before, log.getCompany().toString());
+            log.compact();
+            log.removeRent(bulk[2].getReturnDate());
+            before = log.getCompany().toString();
+            log.close();
+            log = new CompanyLog(logDir, 10, 1 << 20);
+            checkTest("Log - company rebuilt from snapshot and log", before, log.getCompany().toString());
+            // a change that fails with an exception must leave nothing in the log
+            Car noBrand = new Car(3333333, 'B', null, true);
+            log.addRent("No Brand", noBrand, new Date(1, 1, 2022), new Date(3, 1, 2022));
+            try {
+                log.addRent("No Brand", noBrand, new Date(1, 1, 2022), new Date(3, 1, 2022));
+            } catch (RuntimeException e) {
+                // the log must stay usable
+            }
+            log.addRent("After", noBrand, new Date(5, 1, 2022), new Date(6, 1, 2022));
+            before = log.getCompany().toString();
+            log.close();
+            log = new CompanyLog(logDir, 10, 1 << 20);
+            checkTest("Log - records after a failed change are kept", before, log.getCompany().toString());
+            log.close();
+            // a bad record followed by more records is corruption, not the end of the log
+            Path walFile = null;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(logDir, "wal-*.log")) {
+                for (Path file : files)
+                    walFile = file;
+            }
+            byte[] wal = Files.readAllBytes(walFile);
+            wal[12] ^= 1; // inside the first record
+            Files.write(walFile, wal);
+            boolean refused = false;
+            try {
+                new CompanyLog(logDir, 10, 1 << 20).close();
+            } catch (IOException e) {
+                refused = true;
+            }
+            checkTest("Log - corrupt record in the middle refused", true, refused);
+        } catch (IOException e) {
+            checkTest("Log - no IOException", "none", e.toString());
+        }
+
+        //-----------------------ConcurrentCompany Tests---------------------
+        System.out.println("\n=== CONCURRENT COMPANY TESTS ===\n");
+
+        // Every thread adds the same 1000 rents, each with its own return date, so exactly one add of each must win
+        final ConcurrentCompany shared = new ConcurrentCompany();
+        final Company expected = new Company();
+        final Date base = new Date(1, 1, 2020);
+        for (int i = 0; i < 1000; i++) {
+            expected.addRent("Renter " + i % 7, new Car(1000000 + i, (char) ('A' + i % 4), "Brand" + i % 3, i % 2 == 0),
+                    Date.ofEpochDay(base.toEpochDay() + i), Date.ofEpochDay(base.toEpochDay() + 1000 + i));
+        }
+        final AtomicInteger added = new AtomicInteger();
+        runThreads(4, new Runnable() {
+            public void run() {
+                for (int i = 0; i < 1000; i++) {
+                    if (shared.addRent("Renter " + i % 7, new Car(1000000 + i, (char) ('A' + i % 4), "Brand" + i % 3, i % 2 == 0),
+                            Date.ofEpochDay(base.toEpochDay() + i), Date.ofEpochDay(base.toEpochDay() + 1000 + i)))
+                        added.incrementAndGet();
+                }
+            }
+        });
+        checkTest("Concurrent adds - each rent added once", 1000, added.get());
+        checkTest("Concurrent adds - rent count", 1000, shared.getNumOfRents());
+        checkTest("Concurrent adds - same days as Company", expected.getSumOfDays(), shared.getSumOfDays());
+        checkTest("Concurrent adds - same prices as Company", expected.getSumOfPrices(), shared.getSumOfPrices());
+        checkTest("Concurrent adds - same order as Company", expected.toString(), shared.toString());
+
+        // Every thread tries to remove every rent, so exactly one remove of each must win
+        final AtomicInteger removals = new AtomicInteger();
+        runThreads(4, new Runnable() {
+            public void run() {
+                for (int i = 0; i < 1000; i++) {
+                    if (shared.removeRent(Date.ofEpochDay(base.toEpochDay() + 1000 + i)))
+                        removals.incrementAndGet();
+                }
+            }
+        });
+        checkTest("Concurrent removes - each rent removed once", 1000, removals.get());
+        checkTest("Concurrent removes - rent count", 0, shared.getNumOfRents());
+        checkTest("Concurrent removes - days sum", 0, shared.getSumOfDays());
+        checkTest("Concurrent removes - most common rate", 'N', shared.mostCommonRate());
+
         printTestSummary();
     }
+
+    // A random rent of one of three cars in January 2020, so rents often overlap and share return dates
+    private static Rent randomRent(Random random) {
+        Car car = new Car(RANDOM_CAR + random.nextInt(3), "ABCD".charAt(random.nextInt(4)), random.nextBoolean() ? "Kia" : "Seat", random.nextBoolean());
+        Date pick = new Date(1 + random.nextInt(7), 1, 2020);
+        return new Rent(random.nextBoolean() ? "Gal" : "Tom", car, pick, Date.ofEpochDay(pick.toEpochDay() + 1 + random.nextInt(6)));
+    }
+
+    // Adds a random rent (two times out of three) or removes a rent returned on a random day
+    private static void randomChange(Company company, Random random) {
+        if (random.nextInt(3) > 0) {
+            Rent r = randomRent(random);
+            company.addRent(r.getName(), r.getCar(), r.getPickDate(), r.getReturnDate());
+        } else {
+            company.removeRent(new Date(2 + random.nextInt(12), 1, 2020));
+        }
+    }
+
+    // The rents of the company in list order, read from the list itself
+    private static ArrayList<Rent> rentsOf(Company company) {
+        ArrayList<Rent> rents = new ArrayList<Rent>();
+        for (RentNode curr = company.getHead(); curr != null; curr = curr.getNext())
+            rents.add(curr.getRent());
+        return rents;
+    }
+
+    // The rents of a table, row by row
+    private static ArrayList<Rent> tableRents(RentTable table) {
+        ArrayList<Rent> rents = new ArrayList<Rent>();
+        for (int row = 0; row < table.size(); row++)
+            rents.add(table.getRent(row));
+        return rents;
+    }
+
+    // Checks that no rent of the car holds it on a day from (inclusive) to (exclusive)
+    private static boolean isFree(List<Rent> rents, int carId, int from, int to) {
+        for (Rent r : rents) {
+            if (r.getCarId() == carId && r.getPickDate().toEpochDay() < to && r.getReturnDate().toEpochDay() > from)
+                return false;
+        }
+        return true;
+    }
+
+    // Merges overlapping rents until no two of them overlap
+    private static ArrayList<Rent> coalesce(List<Rent> rents) {
+        ArrayList<Rent> merged = new ArrayList<Rent>(rents);
+        for (boolean changed = true; changed; ) {
+            changed = false;
+            for (int i = 0; i < merged.size() && !changed; i++) {
+                for (int j = i + 1; j < merged.size() && !changed; j++) {
+                    Rent union = merged.get(i).overlap(merged.get(j));
+                    if (union != null) {
+                        merged.set(i, union);
+                        merged.remove(j);
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return merged;
+    }
+
+    private static String keyOf(Rent r) {
+        return r.getName() + "|" + r.getCarId() + "|" + r.getCar() + "|" + r.getPickDate() + "|" + r.getReturnDate();
+    }
+
+    private static String listKeys(List<Rent> rents) { // the keys of the rents, in order
+        StringBuilder keys = new StringBuilder();
+        for (Rent r : rents)
+            keys.append(keyOf(r)).append(';');
+        return keys.toString();
+    }
+
+    private static List<String> keysOf(List<Rent> rents) { // the keys of the rents, in any order
+        ArrayList<String> keys = new ArrayList<String>();
+        for (Rent r : rents)
+            keys.add(keyOf(r));
+        Collections.sort(keys);
+        return keys;
+    }
+
+    // Runs the task on the given number of threads at once and waits for all of them
+    private static void runThreads(int threads, Runnable task) {
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(task);
+            workers[i].start();
+        }
+        try {
+            for (Thread worker : workers)
+                worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
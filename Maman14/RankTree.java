@@ -0,0 +1,154 @@
+package Maman14;
+
+import java.util.List;
+
+/**
+ * An order-statistics tree over rent nodes: a treap ordered by an integer key of the rent (largest key first,
+ * equal keys in the order of Company's list) where every tree node also keeps the size of its subtree.
+ * This finds the rent at any position, and the position of any key, in O(log n) expected time (see Treap).
+ *
+ * @author Osher Akshikar
+ * @version 2023a
+ */
+abstract class RankTree extends Treap<RankTree.Node> {
+    /**
+     * One tree node, holding one rent node, its key and the size of its subtree
+     */
+    static class Node extends Treap.Node<Node> {
+        private final int _key;
+        private int _size; // number of nodes in this subtree
+
+        private Node(RentNode rent, int key) {
+            super(rent);
+            _key = key;
+            _size = 1;
+        }
+
+        void update() {
+            _size = 1 + size(_left) + size(_right);
+        }
+    }
+
+    /**
+     * Returns a tree ordered by rent length, longest first
+     *
+     * @return an empty tree ordered by the number of days
+     */
+    static RankTree byDays() {
+        return new RankTree() {
+            int key(RentNode rent) {
+                return rent.getDays();
+            }
+        };
+    }
+
+    /**
+     * Returns a tree ordered by return date, latest first
+     *
+     * @return an empty tree ordered by the return day
+     */
+    static RankTree byReturnDay() {
+        return new RankTree() {
+            int key(RentNode rent) {
+                return rent.getReturnDay();
+            }
+        };
+    }
+
+    /**
+     * The key the tree is ordered by, largest first
+     *
+     * @param rent a rent node
+     * @return the key of the rent node
+     */
+    abstract int key(RentNode rent);
+
+    /**
+     * Adds a rent node to the tree.
+     *
+     * @param rent the rent node to add, not already in the tree
+     */
+    void add(RentNode rent) {
+        insert(new Node(rent, key(rent)));
+    }
+
+    /**
+     * Removes a rent node from the tree.
+     *
+     * @param rent the rent node to remove, in the tree
+     */
+    void remove(RentNode rent) {
+        delete(rent);
+    }
+
+    /**
+     * Returns the rent node at the given position, 0 being the one with the largest key.
+     *
+     * @param index the position, from 0 to size()-1
+     * @return the rent node at that position
+     */
+    RentNode get(int index) {
+        Node curr = _root;
+        while (true) {
+            int left = size(curr._left);
+            if (index < left) {
+                curr = curr._left;
+            } else if (index == left) {
+                return curr._rent;
+            } else {
+                index -= left + 1;
+                curr = curr._right;
+            }
+        }
+    }
+
+    /**
+     * Counts the rent nodes whose key is larger than the given key.
+     *
+     * @param key the key to compare with
+     * @return the number of rent nodes with a larger key
+     */
+    int countAbove(int key) {
+        int count = 0;
+        for (Node curr = _root; curr != null; ) {
+            if (curr._key > key) {
+                count += size(curr._left) + 1;
+                curr = curr._right;
+            } else {
+                curr = curr._left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds the first k rent nodes of the tree to out, in order.
+     *
+     * @param k   the number of rent nodes to add (all of them if there are fewer)
+     * @param out the list the rent nodes are added to
+     */
+    void first(int k, List<RentNode> out) {
+        first(_root, k, out);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node._size;
+    }
+
+    int compare(RentNode rent, Node node) { // tree order: larger keys first, then list order
+        int key = key(rent);
+        if (key != node._key)
+            return key > node._key ? -1 : 1;
+        return RentNode.CHRONOLOGICAL.compare(rent, node._rent);
+    }
+
+    private static int first(Node root, int k, List<RentNode> out) { // returns how many more nodes are still wanted
+        if (root == null || k == 0)
+            return k;
+        k = first(root._left, k, out);
+        if (k == 0)
+            return 0;
+        out.add(root._rent);
+        return first(root._right, k - 1, out);
+    }
+}
@@ -3,8 +3,12 @@ package Maman14;
 
 import Maman12.Rent;
 
+import java.util.Comparator;
+
 /**
  * The RentNode class will represent one rental in the company
+ * Each node also caches its chronological key (pick day, duration and insertion sequence)
+ * so the company's index can order nodes without copying the Rent.
  *
  * @author Osher Akshikar
  * @version 2023a
@@ -12,6 +16,23 @@ import Maman12.Rent;
 public class RentNode {
     private Rent _rent;
     private RentNode _next;
+    private int _pickDay;
+    private int _days;
+    private long _seq;
+
+    /**
+     * Orders nodes exactly like the company's list: by pick date, then longer rentals first,
+     * then by insertion sequence so that equal rentals keep the order they were added in.
+     */
+    static final Comparator<RentNode> CHRONOLOGICAL = new Comparator<RentNode>() {
+        public int compare(RentNode first, RentNode second) {
+            if (first._pickDay != second._pickDay)
+                return Integer.compare(first._pickDay, second._pickDay);
+            if (first._days != second._days)
+                return Integer.compare(second._days, first._days); // longer rent comes first
+            return Long.compare(first._seq, second._seq);
+        }
+    };
 
     /**
      * Creates a new RentNode object
@@ -21,6 +42,7 @@ public class RentNode {
     public RentNode(Rent r) {
         _rent = r;
         _next = null;
+        updateKey();
     }
 
     /**
@@ -32,6 +54,7 @@ public class RentNode {
     public RentNode(Rent r, RentNode next) {
         _rent = new Rent(r);
         _next = next;
+        updateKey();
     }
 
     /**
@@ -42,7 +65,26 @@ public class RentNode {
     public RentNode(RentNode other) {
         _rent = new Rent(other._rent);
         _next = other._next;
+        _pickDay = other._pickDay;
+        _days = other._days;
+        _seq = other._seq;
+    }
 
+    private RentNode(int pickDay) { // a search key without a rent
+        _pickDay = pickDay;
+        _days = Integer.MAX_VALUE;
+        _seq = Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns a search key that CHRONOLOGICAL orders before every node picked on the given day and after every
+     * node picked before it. The key holds no rent and must not be linked into a list.
+     *
+     * @param pickDay the pick day (epoch day)
+     * @return the search key
+     */
+    static RentNode firstOfDay(int pickDay) {
+        return new RentNode(pickDay);
     }
 
     /**
@@ -54,6 +96,16 @@ public class RentNode {
         return new Rent(_rent);
     }
 
+    /**
+     * Returns the Rent object stored in this RentNode without copying it.
+     * Only for read access by the company's traversals, the returned Rent must not be changed.
+     *
+     * @return the stored Rent object
+     */
+    Rent peekRent() {
+        return _rent;
+    }
+
     /**
      * Returns the next RentNode in the list
      *
@@ -70,6 +122,7 @@ public class RentNode {
      */
     public void setRent(Rent r) {
         _rent = new Rent(r);
+        updateKey();
     }
 
     /**
@@ -80,4 +133,56 @@ public class RentNode {
     public void setNext(RentNode next) {
         _next = next;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the epoch day of the pick date
+     *
+     * @return the pick epoch day
+     */
+    int getPickDay() {
+        return _pickDay;
+    }
+
+    /**
+     * Returns the duration of the rent in days
+     *
+     * @return number of rent days
+     */
+    int getDays() {
+        return _days;
+    }
+
+    /**
+     * Returns the epoch day of the return date
+     *
+     * @return the return epoch day
+     */
+    int getReturnDay() {
+        return _pickDay + _days; // the return date is always after the pick date
+    }
+
+    /**
+     * Returns the insertion sequence that breaks ties between rents with the same pick date and duration
+     *
+     * @return the insertion sequence
+     */
+    long getSeq() {
+        return _seq;
+    }
+
+    /**
+     * Sets the insertion sequence of this node
+     *
+     * @param seq the insertion sequence
+     */
+    void setSeq(long seq) {
+        _seq = seq;
+    }
+
+    private void updateKey() { // recomputes the cached chronological key from the rent
+        if (_rent == null)
+            return;
+        _pickDay = _rent.getPickDate().toEpochDay();
+        _days = _rent.howManyDays();
+    }
+}
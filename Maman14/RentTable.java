@@ -0,0 +1,234 @@
+package Maman14;
+
+import Maman12.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The RentTable class holds the rents of a company column by column in primitive arrays
+ * (pick and return epoch days, car id, type, gear and dictionary ids for the brand and the renter name)
+ * so analytics over the whole ledger run as sequential loops instead of following object references.
+ * A table is a snapshot of the company at the time it was built, rows are kept in the company's list order.
+ *
+ * @author Osher Akshikar
+ * @version 2023a
+ */
+public class RentTable {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int PRICE_BATCH = 4096; // rents priced together by getSumOfPrices
+
+    private int _size;
+    private int[] _pickDay;
+    private int[] _returnDay;
+    private int[] _carId;
+    private char[] _type;
+    private boolean[] _manual;
+    private int[] _brandId;
+    private int[] _nameId;
+
+    private ArrayList<String> _names; // renter name of every name id
+    private HashMap<String, Integer> _nameIds;
+    private ArrayList<String> _brands; // brand of every brand id
+    private HashMap<String, Integer> _brandIds;
+
+    /**
+     * Creates an empty table
+     */
+    public RentTable() {
+        _size = 0;
+        _pickDay = new int[INITIAL_CAPACITY];
+        _returnDay = new int[INITIAL_CAPACITY];
+        _carId = new int[INITIAL_CAPACITY];
+        _type = new char[INITIAL_CAPACITY];
+        _manual = new boolean[INITIAL_CAPACITY];
+        _brandId = new int[INITIAL_CAPACITY];
+        _nameId = new int[INITIAL_CAPACITY];
+        _names = new ArrayList<String>();
+        _nameIds = new HashMap<String, Integer>();
+        _brands = new ArrayList<String>();
+        _brandIds = new HashMap<String, Integer>();
+    }
+
+    /**
+     * Creates a table with all the rents of the given company, in the company's order
+     *
+     * @param company the company to copy the rents from
+     */
+    public RentTable(Company company) {
+        this();
+        for (RentNode curr = company.getHead(); curr != null; curr = curr.getNext())
+            add(curr.peekRent());
+    }
+
+    /**
+     * Appends a rent as the last row of the table
+     *
+     * @param r the rent to add
+     */
+    public void add(Rent r) {
+        if (_size == _pickDay.length)
+            grow();
+        int pickDay = r.getPickDay(); // the copy-free accessors, no Date or Car is created per row
+        _pickDay[_size] = pickDay;
+        _returnDay[_size] = pickDay + r.howManyDays();
+        _carId[_size] = r.getCarId();
+        _type[_size] = r.getCarType();
+        _manual[_size] = r.isCarManual();
+        _brandId[_size] = idOf(r.getCarBrand(), _brands, _brandIds);
+        _nameId[_size] = idOf(r.getName(), _names, _nameIds);
+        _size++;
+    }
+
+    private static int idOf(String value, ArrayList<String> values, HashMap<String, Integer> ids) { // dictionary encoding
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            values.add(value);
+            ids.put(value, id);
+        }
+        return id;
+    }
+
+    private void grow() { // doubles the capacity of every column
+        int capacity = _pickDay.length * 2;
+        _pickDay = Arrays.copyOf(_pickDay, capacity);
+        _returnDay = Arrays.copyOf(_returnDay, capacity);
+        _carId = Arrays.copyOf(_carId, capacity);
+        _type = Arrays.copyOf(_type, capacity);
+        _manual = Arrays.copyOf(_manual, capacity);
+        _brandId = Arrays.copyOf(_brandId, capacity);
+        _nameId = Arrays.copyOf(_nameId, capacity);
+    }
+
+    /**
+     * Returns the number of rows in the table
+     *
+     * @return the number of rents
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Returns the car of the given row
+     *
+     * @param row the row index (0 to size()-1)
+     * @return a new Car object with the row's car details
+     */
+    public Car getCar(int row) {
+        return new Car(_carId[row], _type[row], _brands.get(_brandId[row]), _manual[row]);
+    }
+
+    /**
+     * Returns the rent of the given row
+     *
+     * @param row the row index (0 to size()-1)
+     * @return a new Rent object with the row's details
+     */
+    public Rent getRent(int row) {
+        return new Rent(_names.get(_nameId[row]), getCar(row), Date.ofEpochDay(_pickDay[row]), Date.ofEpochDay(_returnDay[row]));
+    }
+
+    /**
+     * Calculates the total sum of days of all the rents in the table
+     *
+     * @return the total number of days
+     */
+    public int getSumOfDays() {
+        int days = 0;
+        for (int i = 0; i < _size; i++)
+            days += _returnDay[i] - _pickDay[i];
+        return days;
+    }
+
+    /**
+     * Calculates the total sum of prices of all the rents in the table
+     *
+     * @return the total sum of prices
+     */
+    public int getSumOfPrices() {
+        return (int) getSumOfPrices(PriceTable.STANDARD);
+    }
+
+    /**
+     * Calculates the total sum of prices of all the rents in the table under the given price table.
+     * The type column is priced directly, the lengths are computed into a small buffer on the way.
+     *
+     * @param prices the price table to use
+     * @return the total sum of prices under that table
+     */
+    public long getSumOfPrices(PriceTable prices) {
+        int[] days = new int[Math.min(_size, PRICE_BATCH)];
+        int[] out = new int[days.length];
+        char[] types = new char[days.length];
+        long sum = 0;
+        for (int from = 0; from < _size; from += PRICE_BATCH) {
+            int n = Math.min(PRICE_BATCH, _size - from);
+            for (int i = 0; i < n; i++)
+                days[i] = _returnDay[from + i] - _pickDay[from + i];
+            System.arraycopy(_type, from, types, 0, n);
+            sum += prices.priceAll(types, days, out, n);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the car of the rent with the latest return date, the first such rent if there are several
+     *
+     * @return the last rented car or null if the table is empty
+     */
+    public Car lastCarRent() {
+        if (_size == 0)
+            return null;
+        int last = 0;
+        for (int i = 1; i < _size; i++) {
+            if (_returnDay[i] > _returnDay[last])
+                last = i;
+        }
+        return getCar(last);
+    }
+
+    /**
+     * Returns the longest rent, the first such rent if there are several
+     *
+     * @return the longest rent or null if the table is empty
+     */
+    public Rent longestRent() {
+        if (_size == 0)
+            return null;
+        int longest = 0;
+        int longestDays = _returnDay[0] - _pickDay[0];
+        for (int i = 1; i < _size; i++) {
+            int days = _returnDay[i] - _pickDay[i];
+            if (days > longestDays) {
+                longest = i;
+                longestDays = days;
+            }
+        }
+        return getRent(longest);
+    }
+
+    /**
+     * Returns the most common car type in the table, ties are broken like Company.mostCommonRate()
+     *
+     * @return the most common car type ('A','B','C', or 'D'), 'N' if the table is empty
+     */
+    public char mostCommonRate() {
+        if (_size == 0)
+            return 'N';
+        int[] counts = new int[4];
+        for (int i = 0; i < _size; i++)
+            counts[_type[i] - 'A']++;
+        int common = Math.max(Math.max(counts[0], counts[1]), Math.max(counts[2], counts[3]));
+        if (common == counts[3])
+            return 'D';
+        if (common == counts[2])
+            return 'C';
+        if (common == counts[1])
+            return 'B';
+        else
+            return 'A';
+    }
+}
@@ -0,0 +1,144 @@
+package Maman14;
+
+import java.util.Random;
+
+/**
+ * A treap over rent nodes: a binary search tree in an order given by the subclass, kept balanced by giving
+ * every tree node a random priority and keeping larger priorities closer to the root.
+ * Inserts and removals take O(log n) expected time. Subclasses add their own data to the tree nodes and
+ * keep it up to date in Node.update, which is called on every node whose subtree changes.
+ *
+ * @author Osher Akshikar
+ * @version 2023a
+ */
+abstract class Treap<N extends Treap.Node<N>> {
+    private static final Random PRIORITIES = new Random(20230101);
+
+    /**
+     * One tree node, holding one rent node
+     */
+    abstract static class Node<N extends Node<N>> {
+        final RentNode _rent;
+        final int _priority; // heap order of the treap, larger priorities are closer to the root
+        N _left;
+        N _right;
+
+        Node(RentNode rent) {
+            _rent = rent;
+            _priority = PRIORITIES.nextInt();
+        }
+
+        /**
+         * Recomputes the data this node keeps about its subtree, from its own rent and its two children
+         */
+        abstract void update();
+    }
+
+    N _root;
+    private int _size;
+
+    /**
+     * Compares a rent node with the rent of a tree node, in the order of the tree.
+     *
+     * @param rent a rent node
+     * @param node a tree node
+     * @return a negative number if rent comes before the node's rent, 0 if it is the same, positive if after
+     */
+    abstract int compare(RentNode rent, N node);
+
+    /**
+     * Returns the number of rent nodes in the tree
+     *
+     * @return the number of rent nodes in the tree
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Adds a tree node, whose rent node is not already in the tree.
+     *
+     * @param node the tree node to add
+     */
+    void insert(N node) {
+        _root = insert(_root, node);
+        _size++;
+    }
+
+    /**
+     * Removes the tree node of a rent node.
+     *
+     * @param rent the rent node to remove
+     * @return true if the node was in the tree
+     */
+    boolean delete(RentNode rent) {
+        int before = _size;
+        _root = delete(_root, rent);
+        return _size < before;
+    }
+
+    private N insert(N root, N node) {
+        if (root == null)
+            return node;
+        if (compare(node._rent, root) < 0) {
+            root._left = insert(root._left, node);
+            if (root._left._priority > root._priority)
+                root = rotateRight(root);
+        } else {
+            root._right = insert(root._right, node);
+            if (root._right._priority > root._priority)
+                root = rotateLeft(root);
+        }
+        root.update();
+        return root;
+    }
+
+    private N delete(N root, RentNode rent) {
+        if (root == null)
+            return null;
+        int order = compare(rent, root);
+        if (order < 0) {
+            root._left = delete(root._left, rent);
+        } else if (order > 0) {
+            root._right = delete(root._right, rent);
+        } else {
+            _size--;
+            return join(root._left, root._right);
+        }
+        root.update();
+        return root;
+    }
+
+    private static <N extends Node<N>> N join(N left, N right) { // every node of left comes before every node of right
+        if (left == null)
+            return right;
+        if (right == null)
+            return left;
+        if (left._priority > right._priority) {
+            left._right = join(left._right, right);
+            left.update();
+            return left;
+        }
+        right._left = join(left, right._left);
+        right.update();
+        return right;
+    }
+
+    private static <N extends Node<N>> N rotateRight(N root) {
+        N top = root._left;
+        root._left = top._right;
+        top._right = root;
+        root.update();
+        top.update();
+        return top;
+    }
+
+    private static <N extends Node<N>> N rotateLeft(N root) {
+        N top = root._right;
+        root._right = top._left;
+        top._left = root;
+        root.update();
+        top.update();
+        return top;
+    }
+}